@@ -0,0 +1,91 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.service.TransientFailureRetryInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import javax.sql.DataSource;
+import java.net.Socket;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+/**
+ * 벤치마크용 DB 준비
+ * - ConnectionConst.URL(localhost:9092) 에 H2 서버가 없으면 같은 JVM 안에서 TCP 서버를 띄운다
+ *   애플리케이션과 똑같이 TCP 로 접속하므로 왕복 비용이 측정에 포함된다
+ * - member 테이블이 없으면 만든다
+ */
+@Slf4j
+public abstract class BenchmarkDatabase {
+
+    private static final int H2_PORT = 9092;
+    private static Server server;
+
+    public static synchronized void start() {
+        if (server == null && !isListening()) {
+            try {
+                server = Server.createTcpServer("-tcpPort", String.valueOf(H2_PORT), "-ifNotExists").start();
+                log.info("started embedded h2 server {}", server.getURL());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        new JdbcTemplate(driverManagerDataSource()).execute("create table if not exists member (" +
+                "member_id varchar(10), money integer not null default 0, primary key (member_id))");
+    }
+
+    public static DataSource driverManagerDataSource() {
+        return new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    public static HikariDataSource pooledDataSource(int maximumPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setPoolName("BenchmarkPool");
+        return dataSource;
+    }
+
+    /**
+     * 스프링 컨테이너 없이 @Transactional 을 적용한 프록시를 만든다 (컨테이너가 만드는 것과 같은 TransactionInterceptor)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T transactionalProxy(T target, TransactionManager transactionManager) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
+
+    /**
+     * 트랜잭션 프록시 바깥에 재시도 인터셉터를 둔다. 재시도할 때마다 새 트랜잭션으로 다시 실행된다
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T retryingTransactionalProxy(T target, TransactionManager transactionManager,
+                                                   TransientFailureRetryInterceptor retryInterceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(retryInterceptor);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
+
+    private static boolean isListening() {
+        try (Socket ignored = new Socket("localhost", H2_PORT)) {
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+}
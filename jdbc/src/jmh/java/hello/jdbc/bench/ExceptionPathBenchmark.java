@@ -0,0 +1,109 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.PrecomputedSQLExceptionTranslator;
+import hello.jdbc.repository.ex.MemberNotFoundException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 실패한 연산 한 건의 비용 비교
+ * - springTranslate / precomputedTranslate / stacklessTranslate: 키 중복 SQLException(23505) 변환 비용
+ * - notFound / stacklessNotFound: 회원 없음 예외 생성 비용
+ * - saveDuplicate / findMissing: MemberRepositoryV4_2 에서 DB 왕복을 포함한 실패 비용 (stackless 파라미터로 비교)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExceptionPathBenchmark {
+
+    private static final String SQL = "insert into member(member_id, money) values(?, ?)";
+    private static final String MEMBER_ID = "exBench";
+
+    @Param({"false", "true"})
+    boolean stackless;
+
+    HikariDataSource dataSource;
+    SQLExceptionTranslator springTranslator;
+    SQLExceptionTranslator precomputedTranslator;
+    SQLExceptionTranslator stacklessTranslator;
+    SQLException duplicateKey;
+    MemberRepository memberRepository;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.start();
+        dataSource = BenchmarkDatabase.pooledDataSource(4);
+        springTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        precomputedTranslator = new PrecomputedSQLExceptionTranslator(dataSource);
+        stacklessTranslator = new PrecomputedSQLExceptionTranslator(dataSource, true);
+        duplicateKey = new SQLException("Unique index or primary key violation", "23505", 23505);
+        memberRepository = new MemberRepositoryV4_2(dataSource, MemberRepository.DEFAULT_BATCH_SIZE, stackless);
+        memberRepository.saveOrUpdate(new Member(MEMBER_ID, 0));
+    }
+
+    @TearDown
+    public void tearDown() {
+        memberRepository.delete(MEMBER_ID);
+        dataSource.close();
+    }
+
+    @Benchmark
+    public DataAccessException springTranslate() {
+        return springTranslator.translate("save", SQL, duplicateKey);
+    }
+
+    @Benchmark
+    public DataAccessException precomputedTranslate() {
+        return precomputedTranslator.translate("save", SQL, duplicateKey);
+    }
+
+    @Benchmark
+    public DataAccessException stacklessTranslate() {
+        return stacklessTranslator.translate("save", SQL, duplicateKey);
+    }
+
+    @Benchmark
+    public NoSuchElementException notFound() {
+        return new NoSuchElementException("member not found memberId = " + MEMBER_ID);
+    }
+
+    @Benchmark
+    public NoSuchElementException stacklessNotFound() {
+        return new MemberNotFoundException(MEMBER_ID, false);
+    }
+
+    @Benchmark
+    public Exception saveDuplicate() {
+        try {
+            memberRepository.save(new Member(MEMBER_ID, 0));
+        } catch (DuplicateKeyException e) {
+            return e;
+        }
+        throw new IllegalStateException("duplicate key expected");
+    }
+
+    @Benchmark
+    public Exception findMissing() {
+        try {
+            memberRepository.findById("exMissing");
+        } catch (NoSuchElementException e) {
+            return e;
+        }
+        throw new IllegalStateException("member not found expected");
+    }
+
+}
@@ -0,0 +1,124 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 소수의 계좌에 이체가 몰릴 때 이체 방식별 처리량 비교
+ * - bizLogic: 락 없이 조회 후 from -> to 순서로 변경 (갱신 유실, 교착 상태 가능)
+ * - locking: member_id 순서로 두 행을 한 번에 for update 로 잠근 뒤 변경
+ * - delta: money = money + ? 로 변경 (조회 없음)
+ * 8 쓰레드가 accounts 개의 계좌 중 임의의 두 계좌 사이에서 임의의 방향으로 이체한다
+ * 교착 상태 / 락 타임아웃으로 실패한 이체는 failures 보조 카운터로 함께 보고한다
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class HotAccountBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"2", "16"})
+        int accounts;
+
+        HikariDataSource dataSource;
+        MemberRepository memberRepository;
+        MemberServiceV4 memberService;
+        List<String> memberIds = new ArrayList<>();
+
+        @Setup
+        public void setup() {
+            BenchmarkDatabase.start();
+            dataSource = BenchmarkDatabase.pooledDataSource(8);
+            memberRepository = new MemberRepositoryV5(dataSource);
+            memberService = BenchmarkDatabase.transactionalProxy(
+                    new MemberServiceV4(memberRepository), new DataSourceTransactionManager(dataSource));
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                memberIds.add("hot" + i);
+                members.add(new Member("hot" + i, 1_000_000_000));
+            }
+            memberRepository.deleteAll(memberIds);
+            memberRepository.saveAll(members);
+        }
+
+        @TearDown
+        public void tearDown() {
+            memberRepository.deleteAll(memberIds);
+            dataSource.close();
+        }
+
+        String pick(ThreadLocalRandom random) {
+            return memberIds.get(random.nextInt(accounts));
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+
+        public long failures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failures = 0;
+        }
+    }
+
+    @Benchmark
+    public void bizLogic(Shared shared, Failures failures) {
+        transfer(shared, failures, TransferType.BIZ_LOGIC);
+    }
+
+    @Benchmark
+    public void locking(Shared shared, Failures failures) {
+        transfer(shared, failures, TransferType.LOCKING);
+    }
+
+    @Benchmark
+    public void delta(Shared shared, Failures failures) {
+        transfer(shared, failures, TransferType.DELTA);
+    }
+
+    private enum TransferType {BIZ_LOGIC, LOCKING, DELTA}
+
+    private static void transfer(Shared shared, Failures failures, TransferType type) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String fromId = shared.pick(random);
+        String toId = shared.pick(random);
+        while (toId.equals(fromId)) {
+            toId = shared.pick(random);
+        }
+        try {
+            switch (type) {
+                case BIZ_LOGIC:
+                    shared.memberService.accountTransfer(fromId, toId, 1);
+                    break;
+                case LOCKING:
+                    shared.memberService.accountTransferLocking(fromId, toId, 1);
+                    break;
+                default:
+                    shared.memberService.accountTransferDelta(fromId, toId, 1);
+                    break;
+            }
+        } catch (ConcurrencyFailureException e) {
+            failures.failures++;
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV0;
+import hello.jdbc.repository.MemberRepositoryV1;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MemberRepositoryV0 ~ V5 의 save / findById / update / delete 비용 비교
+ * - V0: DriverManager (DBConnectionUtil), V1: DataSource + JdbcUtils, V3: DataSourceUtils,
+ *   V4_2: SQLErrorCodeSQLExceptionTranslator, V5: JdbcTemplate
+ * - pooling=false 면 DriverManagerDataSource (매번 새 커넥션), true 면 HikariCP
+ *   V0 은 DataSource 를 받지 않으므로 DBConnectionUtil 의 풀링 모드를 켜고 끈다
+ * Throughput / AverageTime / SampleTime(p99) 을 함께 보고, 할당량은 build.gradle 의 gc 프로파일러로 측정한다
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    private static final int POOL_SIZE = 10;
+
+    @Param({"V0", "V1", "V3", "V4_2", "V5"})
+    String repository;
+
+    @Param({"false", "true"})
+    boolean pooling;
+
+    DataSource dataSource;
+    Repository target;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.start();
+        dataSource = pooling ? BenchmarkDatabase.pooledDataSource(POOL_SIZE) : BenchmarkDatabase.driverManagerDataSource();
+        target = create(repository, dataSource);
+        if ("V0".equals(repository)) {
+            if (pooling) {
+                DBConnectionUtil.enablePooling(POOL_SIZE);
+            } else {
+                DBConnectionUtil.disablePooling();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cleanUp();
+        DBConnectionUtil.disablePooling();
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        new JdbcTemplate(BenchmarkDatabase.driverManagerDataSource()).update("delete from member where member_id like 'rb%'");
+    }
+
+    /**
+     * 쓰레드마다 자기 회원을 사용한다 - findById, update 대상
+     */
+    @State(Scope.Thread)
+    public static class Account {
+
+        private static final AtomicInteger sequence = new AtomicInteger();
+
+        String memberId;
+
+        @Setup(Level.Iteration)
+        public void setup(RepositoryBenchmark benchmark) throws Exception {
+            memberId = "rbA" + sequence.incrementAndGet();
+            benchmark.target.save(new Member(memberId, 10000));
+        }
+    }
+
+    /**
+     * save 는 매번 새 회원, delete 는 호출 직전에 만들어둔 회원을 사용한다
+     */
+    @State(Scope.Thread)
+    public static class NewMember {
+
+        private static final AtomicInteger sequence = new AtomicInteger();
+
+        String memberId;
+
+        @Setup(Level.Invocation)
+        public void next() {
+            memberId = "rbN" + sequence.incrementAndGet();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExistingMember {
+
+        private static final AtomicInteger sequence = new AtomicInteger();
+
+        String memberId;
+
+        @Setup(Level.Invocation)
+        public void prepare(RepositoryBenchmark benchmark) throws Exception {
+            memberId = "rbE" + sequence.incrementAndGet();
+            benchmark.target.save(new Member(memberId, 10000));
+        }
+    }
+
+    @Benchmark
+    public Member save(NewMember member) throws Exception {
+        return target.save(new Member(member.memberId, 10000));
+    }
+
+    @Benchmark
+    public Member findById(Account account) throws Exception {
+        return target.findById(account.memberId);
+    }
+
+    @Benchmark
+    public void update(Account account) throws Exception {
+        target.update(account.memberId, 20000);
+    }
+
+    @Benchmark
+    public void delete(ExistingMember member) throws Exception {
+        target.delete(member.memberId);
+    }
+
+    /**
+     * V0 ~ V3 는 공통 인터페이스가 없고 예외 타입도 달라서 벤치마크 안에서만 사용하는 어댑터로 맞춘다
+     */
+    interface Repository {
+        Member save(Member member) throws Exception;
+
+        Member findById(String memberId) throws Exception;
+
+        void update(String memberId, int money) throws Exception;
+
+        void delete(String memberId) throws Exception;
+    }
+
+    private static Repository create(String version, DataSource dataSource) {
+        switch (version) {
+            case "V0": {
+                MemberRepositoryV0 repository = new MemberRepositoryV0();
+                return new Repository() {
+                    public Member save(Member member) throws Exception { return repository.save(member); }
+                    public Member findById(String memberId) throws Exception { return repository.findById(memberId); }
+                    public void update(String memberId, int money) throws Exception { repository.update(memberId, money); }
+                    public void delete(String memberId) throws Exception { repository.delete(memberId); }
+                };
+            }
+            case "V1": {
+                MemberRepositoryV1 repository = new MemberRepositoryV1(dataSource);
+                return new Repository() {
+                    public Member save(Member member) throws Exception { return repository.save(member); }
+                    public Member findById(String memberId) throws Exception { return repository.findById(memberId); }
+                    public void update(String memberId, int money) throws Exception { repository.update(memberId, money); }
+                    public void delete(String memberId) throws Exception { repository.delete(memberId); }
+                };
+            }
+            case "V3": {
+                MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+                return new Repository() {
+                    public Member save(Member member) throws Exception { return repository.save(member); }
+                    public Member findById(String memberId) throws Exception { return repository.findById(memberId); }
+                    public void update(String memberId, int money) throws Exception { repository.update(memberId, money); }
+                    public void delete(String memberId) throws Exception { repository.delete(memberId); }
+                };
+            }
+            case "V4_2":
+                return of(new MemberRepositoryV4_2(dataSource));
+            case "V5":
+                return of(new MemberRepositoryV5(dataSource));
+            default:
+                throw new IllegalArgumentException("unknown repository " + version);
+        }
+    }
+
+    private static Repository of(MemberRepository repository) {
+        return new Repository() {
+            public Member save(Member member) { return repository.save(member); }
+            public Member findById(String memberId) { return repository.findById(memberId); }
+            public void update(String memberId, int money) { repository.update(memberId, money); }
+            public void delete(String memberId) { repository.delete(memberId); }
+        };
+    }
+
+}
@@ -0,0 +1,122 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MemberRowMapper;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RowMapper 비교
+ * - label: 기존 MemberRepositoryV5.memberRowMapper() - 행마다 컬럼 이름으로 찾는다
+ * - position: MemberRowMapper.INSTANCE - 고정된 컬럼 위치
+ * - resolved: MemberRowMapper.forResultSet() - statement 당 한 번 메타데이터로 위치를 찾는다
+ * 매핑 비용만 보기 위해 메모리 ResultSet(SimpleResultSet) 을 사용한다
+ *
+ * findById / findMoneyById 는 실제 DB 에서 Member 를 만드는 조회와 잔액만 읽는 조회를 비교한다
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private static final RowMapper<Member> LABEL_MAPPER = (rs, rowNum) -> {
+        Member member = new Member();
+        member.setMemberId(rs.getString("member_id"));
+        member.setMoney(rs.getInt("money"));
+        return member;
+    };
+
+    @State(Scope.Thread)
+    public static class Rows {
+
+        SimpleResultSet rs;
+
+        @Setup
+        public void setup() {
+            rs = new SimpleResultSet();
+            rs.setAutoClose(false);
+            rs.addColumn("MEMBER_ID", Types.VARCHAR, 10, 0);
+            rs.addColumn("MONEY", Types.INTEGER, 10, 0);
+            for (int i = 0; i < ROWS; i++) {
+                rs.addRow("member" + i, i);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void rewind() throws SQLException {
+            rs.beforeFirst();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        HikariDataSource dataSource;
+        MemberRepository memberRepository;
+
+        @Setup
+        public void setup() {
+            BenchmarkDatabase.start();
+            dataSource = BenchmarkDatabase.pooledDataSource(16);
+            memberRepository = new MemberRepositoryV5(dataSource);
+            memberRepository.deleteAll(List.of("mapperBench"));
+            memberRepository.save(new Member("mapperBench", 10000));
+        }
+
+        @TearDown
+        public void tearDown() {
+            memberRepository.delete("mapperBench");
+            dataSource.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void label(Rows rows, Blackhole blackhole) throws SQLException {
+        map(rows.rs, LABEL_MAPPER, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void position(Rows rows, Blackhole blackhole) throws SQLException {
+        map(rows.rs, MemberRowMapper.INSTANCE, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void resolved(Rows rows, Blackhole blackhole) throws SQLException {
+        map(rows.rs, MemberRowMapper.forResultSet(rows.rs), blackhole);
+    }
+
+    @Benchmark
+    public Member findById(Database database) {
+        return database.memberRepository.findById("mapperBench");
+    }
+
+    @Benchmark
+    public int findMoneyById(Database database) {
+        return database.memberRepository.findMoneyById("mapperBench");
+    }
+
+    private static void map(SimpleResultSet rs, RowMapper<Member> rowMapper, Blackhole blackhole) throws SQLException {
+        int rowNum = 0;
+        while (rs.next()) {
+            blackhole.consume(rowMapper.mapRow(rs, rowNum++));
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ScopedConnectionDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferCommand;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.ScopedTransactionInterceptor;
+import hello.jdbc.service.VirtualThreadTransferExecutor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 가상 쓰레드 transfers 개로 이체할 때 트랜잭션 커넥션 바인딩 방식 비교
+ * - threadLocal: TransactionInterceptor + DataSourceTransactionManager (TransactionSynchronizationManager 의 ThreadLocal)
+ * - scopedValue: ScopedTransactionInterceptor + ScopedConnectionDataSource
+ * 가상 쓰레드는 이체마다 새로 만들어진다 (VirtualThreadTransferExecutor). 할당량은 gc 프로파일러로 함께 본다
+ * 두 방식 모두 리포지토리(JdbcTemplate -> DataSourceUtils)가 TransactionSynchronizationManager 를 조회하므로
+ * 가상 쓰레드마다 ThreadLocal 맵이 생기는 비용은 양쪽에 같이 들어 있다. 차이는 트랜잭션 동기화/리소스 바인딩 비용이다
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScopedTransactionBenchmark {
+
+    private static final int MEMBERS = 1000;
+
+    @Param({"threadLocal", "scopedValue"})
+    String binding;
+
+    @Param({"10000", "100000"})
+    int transfers;
+
+    HikariDataSource hikariDataSource;
+    MemberRepositoryV5 memberRepository;
+    VirtualThreadTransferExecutor executor;
+    List<String> memberIds = new ArrayList<>();
+    List<TransferCommand> commands;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.start();
+        hikariDataSource = BenchmarkDatabase.pooledDataSource(32);
+        MemberServiceV4 memberService;
+        if ("scopedValue".equals(binding)) {
+            ScopedConnectionDataSource dataSource = new ScopedConnectionDataSource(hikariDataSource);
+            memberRepository = new MemberRepositoryV5(dataSource);
+            ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository));
+            proxyFactory.setProxyTargetClass(true);
+            proxyFactory.addAdvice(new ScopedTransactionInterceptor(dataSource));
+            memberService = (MemberServiceV4) proxyFactory.getProxy();
+        } else {
+            memberRepository = new MemberRepositoryV5(hikariDataSource);
+            memberService = BenchmarkDatabase.transactionalProxy(
+                    new MemberServiceV4(memberRepository), new DataSourceTransactionManager(hikariDataSource));
+        }
+        executor = new VirtualThreadTransferExecutor(memberService, hikariDataSource.getMaximumPoolSize());
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            memberIds.add("sv" + i);
+            members.add(new Member("sv" + i, 1_000_000));
+        }
+        memberRepository.deleteAll(memberIds);
+        memberRepository.saveAll(members);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        commands = new ArrayList<>(transfers);
+        for (int i = 0; i < transfers; i++) {
+            int from = random.nextInt(MEMBERS);
+            int to = (from + 1 + random.nextInt(MEMBERS - 1)) % MEMBERS;
+            commands.add(new TransferCommand(memberIds.get(from), memberIds.get(to), 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        memberRepository.deleteAll(memberIds);
+        hikariDataSource.close();
+    }
+
+    @Benchmark
+    public Object transferAll() {
+        return executor.transferAll(commands);
+    }
+
+}
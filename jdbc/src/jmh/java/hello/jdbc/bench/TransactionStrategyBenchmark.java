@@ -0,0 +1,143 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.service.MemberServiceV2;
+import hello.jdbc.service.MemberServiceV3_1;
+import hello.jdbc.service.MemberServiceV3_2;
+import hello.jdbc.service.MemberServiceV3_3;
+import hello.jdbc.service.MemberServiceV4;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 같은 accountTransfer 를 트랜잭션 관리 방식별로 비교
+ * - V2: 커넥션을 파라미터로 넘기는 수동 트랜잭션
+ * - V3_1: PlatformTransactionManager, V3_2: TransactionTemplate
+ * - V3_3, V4: @Transactional AOP 프록시 (V4 는 MemberRepositoryV4_2 사용)
+ * commit 은 정상 이체, rollback 은 toId 가 "ex" 라서 validate 에서 예외가 터지는 이체
+ * 쓰레드 수는 하위 클래스의 @Threads 로 1 / 8 / 32 / 128 을 나눈다. 커넥션 풀은 쓰레드 수만큼 만들어서 풀 대기가 아닌
+ * 트랜잭션 관리 비용을 비교한다. 쓰레드마다 자기 회원을 사용하므로 행 락 경합은 없다
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public abstract class TransactionStrategyBenchmark {
+
+    static final String EX_MEMBER_ID = "ex";
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"V2", "V3_1", "V3_2", "V3_3", "V4"})
+        String strategy;
+
+        HikariDataSource dataSource;
+        Transfer transfer;
+
+        @Setup
+        public void setup(BenchmarkParams params) {
+            BenchmarkDatabase.start();
+            dataSource = BenchmarkDatabase.pooledDataSource(params.getThreads());
+            transfer = create(strategy, dataSource);
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            template.update("delete from member where member_id = ?", EX_MEMBER_ID);
+            template.update("insert into member(member_id, money) values(?, ?)", EX_MEMBER_ID, 0);
+        }
+
+        @TearDown
+        public void tearDown() {
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            template.update("delete from member where member_id = ?", EX_MEMBER_ID);
+            template.update("delete from member where member_id like 'ts%'");
+            dataSource.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Accounts {
+
+        private static final AtomicInteger sequence = new AtomicInteger();
+
+        String fromId;
+        String toId;
+
+        @Setup(Level.Trial)
+        public void setup(Shared shared) {
+            int n = sequence.incrementAndGet();
+            fromId = "tsA" + n;
+            toId = "tsB" + n;
+            JdbcTemplate template = new JdbcTemplate(shared.dataSource);
+            template.update("insert into member(member_id, money) values(?, ?)", fromId, 1_000_000_000);
+            template.update("insert into member(member_id, money) values(?, ?)", toId, 0);
+        }
+    }
+
+    @Benchmark
+    public void commit(Shared shared, Accounts accounts) throws Exception {
+        shared.transfer.accountTransfer(accounts.fromId, accounts.toId, 1);
+    }
+
+    @Benchmark
+    public Exception rollback(Shared shared, Accounts accounts) throws Exception {
+        try {
+            shared.transfer.accountTransfer(accounts.fromId, EX_MEMBER_ID, 1);
+        } catch (IllegalStateException e) {
+            return e;
+        }
+        throw new IllegalStateException("rollback path did not fail");
+    }
+
+    @Threads(1)
+    public static class Threads1 extends TransactionStrategyBenchmark {
+    }
+
+    @Threads(8)
+    public static class Threads8 extends TransactionStrategyBenchmark {
+    }
+
+    @Threads(32)
+    public static class Threads32 extends TransactionStrategyBenchmark {
+    }
+
+    @Threads(128)
+    public static class Threads128 extends TransactionStrategyBenchmark {
+    }
+
+    /**
+     * 서비스마다 던지는 예외 타입이 달라서 벤치마크 안에서만 사용하는 인터페이스로 맞춘다
+     */
+    interface Transfer {
+        void accountTransfer(String fromId, String toId, int money) throws Exception;
+    }
+
+    private static Transfer create(String strategy, HikariDataSource dataSource) {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        switch (strategy) {
+            case "V2":
+                return new MemberServiceV2(new MemberRepositoryV2(dataSource), dataSource)::accountTransfer;
+            case "V3_1":
+                return new MemberServiceV3_1(new MemberRepositoryV3(dataSource), transactionManager)::accountTransfer;
+            case "V3_2":
+                return new MemberServiceV3_2(new MemberRepositoryV3(dataSource), transactionManager)::accountTransfer;
+            case "V3_3":
+                return BenchmarkDatabase.transactionalProxy(
+                        new MemberServiceV3_3(new MemberRepositoryV3(dataSource)), transactionManager)::accountTransfer;
+            case "V4":
+                return BenchmarkDatabase.transactionalProxy(
+                        new MemberServiceV4(new MemberRepositoryV4_2(dataSource)), transactionManager)::accountTransfer;
+            default:
+                throw new IllegalArgumentException("unknown strategy " + strategy);
+        }
+    }
+
+}
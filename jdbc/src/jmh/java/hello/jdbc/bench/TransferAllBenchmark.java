@@ -0,0 +1,97 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferCommand;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.VirtualThreadTransferExecutor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 이체 1000 건 일괄 처리 비교
+ * - platformPool: 기존 배치 작업처럼 고정 크기(8) 플랫폼 쓰레드 풀에서 accountTransferLocking 실행
+ * - virtualThreads: VirtualThreadTransferExecutor - 이체마다 가상 쓰레드, 동시 실행 수는 커넥션 풀 크기(32)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferAllBenchmark {
+
+    private static final int MEMBERS = 1000;
+    private static final int TRANSFERS = 1000;
+    private static final int PLATFORM_THREADS = 8;
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    MemberServiceV4 memberService;
+    VirtualThreadTransferExecutor virtualExecutor;
+    ExecutorService platformPool;
+    List<String> memberIds = new ArrayList<>();
+    List<TransferCommand> commands;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.start();
+        dataSource = BenchmarkDatabase.pooledDataSource(32);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        memberService = BenchmarkDatabase.transactionalProxy(
+                new MemberServiceV4(memberRepository), new DataSourceTransactionManager(dataSource));
+        virtualExecutor = new VirtualThreadTransferExecutor(memberService, dataSource);
+        platformPool = Executors.newFixedThreadPool(PLATFORM_THREADS);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            memberIds.add("ta" + i);
+            members.add(new Member("ta" + i, 1_000_000));
+        }
+        memberRepository.deleteAll(memberIds);
+        memberRepository.saveAll(members);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        commands = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            int from = random.nextInt(MEMBERS);
+            int to = (from + 1 + random.nextInt(MEMBERS - 1)) % MEMBERS;
+            commands.add(new TransferCommand(memberIds.get(from), memberIds.get(to), 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        platformPool.shutdownNow();
+        memberRepository.deleteAll(memberIds);
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void platformPool() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(TRANSFERS);
+        for (TransferCommand command : commands) {
+            futures.add(platformPool.submit(() ->
+                    memberService.accountTransferLocking(command.getFromId(), command.getToId(), command.getMoney())));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @Benchmark
+    public Object virtualThreads() {
+        return virtualExecutor.transferAll(commands);
+    }
+
+}
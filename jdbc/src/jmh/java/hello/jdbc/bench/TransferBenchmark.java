@@ -0,0 +1,91 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.H2TransferFunction;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 이체 한 건의 비용 비교
+ * - bizLogic: MemberServiceV4.accountTransfer - 조회 2번 + 변경 2번 + 커밋 (왕복 5번 이상)
+ * - delta: MemberServiceV4.accountTransferDelta - 변경 2번 + 커밋
+ * - function: MemberRepository.transfer - H2 함수 호출 1번 (자동 커밋)
+ * 쓰레드마다 자기 회원 쌍을 사용해서 락 경합 없이 순수한 왕복 비용만 비교한다
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        HikariDataSource dataSource;
+        MemberRepository memberRepository;
+        MemberServiceV4 memberService;
+
+        @Setup
+        public void setup() {
+            BenchmarkDatabase.start();
+            dataSource = BenchmarkDatabase.pooledDataSource(16);
+            H2TransferFunction.register(dataSource);
+            memberRepository = new MemberRepositoryV5(dataSource);
+            memberService = BenchmarkDatabase.transactionalProxy(
+                    new MemberServiceV4(memberRepository), new DataSourceTransactionManager(dataSource));
+        }
+
+        @TearDown
+        public void tearDown() {
+            dataSource.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Accounts {
+
+        private static final AtomicInteger sequence = new AtomicInteger();
+
+        String fromId;
+        String toId;
+
+        @Setup(Level.Iteration)
+        public void setup(Shared shared) {
+            int n = sequence.incrementAndGet();
+            fromId = "tfA" + n;
+            toId = "tfB" + n;
+            shared.memberRepository.deleteAll(List.of(fromId, toId));
+            shared.memberRepository.saveAll(List.of(new Member(fromId, 1_000_000_000), new Member(toId, 0)));
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(Shared shared) {
+            shared.memberRepository.deleteAll(List.of(fromId, toId));
+        }
+    }
+
+    @Benchmark
+    public void bizLogic(Shared shared, Accounts accounts) {
+        shared.memberService.accountTransfer(accounts.fromId, accounts.toId, 1);
+    }
+
+    @Benchmark
+    public void delta(Shared shared, Accounts accounts) {
+        shared.memberService.accountTransferDelta(accounts.fromId, accounts.toId, 1);
+    }
+
+    @Benchmark
+    public void function(Shared shared, Accounts accounts) {
+        shared.memberRepository.transfer(accounts.fromId, accounts.toId, 1);
+    }
+
+}
@@ -0,0 +1,180 @@
+package hello.jdbc.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.TransientFailureRetryInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 동시 이체 부하 테스트
+ * - 회원 N 명을 만들고 여러 쓰레드에서 임의의 두 회원 사이에 MemberServiceV4 이체를 계속 실행한다
+ * - hotKeyRatio 비율의 이체는 앞쪽 hotKeys 명 사이에서만 일어나서 락 경합을 만든다
+ * - 처리량, 지연시간 분위수, 데드락 / 락 타임아웃 횟수를 출력한다
+ * - 끝나면 전체 잔액 합계가 처음과 같은지 확인한다. bizLogic 은 조회 후 계산한 값으로 덮어쓰므로 (read-modify-write)
+ *   같은 회원을 동시에 변경하면 갱신 손실로 합계가 달라질 수 있다. delta 는 money = money + ? 로 변경한다
+ *
+ * <pre>
+ * gradle loadTest -Dload.threads=64 -Dload.virtual=true -Dload.hotKeyRatio=0.5 -Dload.operation=delta
+ * </pre>
+ * 설정 (시스템 프로퍼티, 괄호는 기본값)
+ * - load.members(1000), load.threads(16), load.virtual(false), load.seconds(30), load.poolSize(16)
+ * - load.hotKeys(10), load.hotKeyRatio(0.0), load.operation(bizLogic | delta)
+ * - load.retry(false) - TransientFailureRetryInterceptor 로 교착 상태 / 락 타임아웃을 재시도한다
+ */
+@Slf4j
+public class TransferLoadTest {
+
+    private static final String ID_PREFIX = "lt";
+    private static final int INITIAL_MONEY = 10_000;
+
+    private final int members = Integer.getInteger("load.members", 1000);
+    private final int threads = Integer.getInteger("load.threads", 16);
+    private final boolean virtual = Boolean.getBoolean("load.virtual");
+    private final int seconds = Integer.getInteger("load.seconds", 30);
+    private final int poolSize = Integer.getInteger("load.poolSize", 16);
+    private final int hotKeys = Integer.getInteger("load.hotKeys", 10);
+    private final double hotKeyRatio = Double.parseDouble(System.getProperty("load.hotKeyRatio", "0.0"));
+    private final String operation = System.getProperty("load.operation", "bizLogic");
+    private final boolean retry = Boolean.getBoolean("load.retry");
+    private final TransientFailureRetryInterceptor retryInterceptor = new TransientFailureRetryInterceptor();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+    private final LongAdder otherFailures = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        new TransferLoadTest().run();
+    }
+
+    public void run() throws Exception {
+        if (members < 2 || hotKeys < 2 || hotKeys > members) {
+            throw new IllegalArgumentException("load.members >= load.hotKeys >= 2 required");
+        }
+        BenchmarkDatabase.start();
+        try (HikariDataSource dataSource = BenchmarkDatabase.pooledDataSource(poolSize)) {
+            MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            MemberServiceV4 memberService = retry
+                    ? BenchmarkDatabase.retryingTransactionalProxy(new MemberServiceV4(memberRepository), transactionManager, retryInterceptor)
+                    : BenchmarkDatabase.transactionalProxy(new MemberServiceV4(memberRepository), transactionManager);
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+
+            seed(template, memberRepository);
+            long expectedTotal = totalMoney(template);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            long start = System.nanoTime();
+            ExecutorService executor = newExecutor();
+            try {
+                for (int i = 0; i < threads; i++) {
+                    executor.execute(() -> {
+                        while (System.nanoTime() < deadline) {
+                            transferOnce(memberService);
+                        }
+                    });
+                }
+            } finally {
+                executor.shutdown();
+            }
+            if (!executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+                throw new IllegalStateException("load test workers did not finish");
+            }
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            long actualTotal = totalMoney(template);
+            report(elapsedSeconds, expectedTotal, actualTotal);
+            template.update("delete from member where member_id like '" + ID_PREFIX + "%'");
+            if (expectedTotal != actualTotal) {
+                throw new IllegalStateException("money is not conserved: expected " + expectedTotal + ", actual " + actualTotal);
+            }
+        }
+    }
+
+    private void transferOnce(MemberServiceV4 memberService) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int bound = random.nextDouble() < hotKeyRatio ? hotKeys : members;
+        int from = random.nextInt(bound);
+        int to = random.nextInt(bound - 1);
+        if (to >= from) {
+            to++; //from 과 다른 회원
+        }
+        int money = random.nextInt(1, 101);
+
+        long start = System.nanoTime();
+        try {
+            if ("delta".equals(operation)) {
+                memberService.accountTransferDelta(ID_PREFIX + from, ID_PREFIX + to, money);
+            } else {
+                memberService.accountTransfer(ID_PREFIX + from, ID_PREFIX + to, money);
+            }
+            committed.increment();
+        } catch (CannotAcquireLockException | QueryTimeoutException e) {
+            lockTimeouts.increment();
+        } catch (PessimisticLockingFailureException e) {
+            //DeadlockLoserDataAccessException(deprecated) 포함
+            deadlocks.increment();
+        } catch (RuntimeException e) {
+            otherFailures.increment();
+            log.warn("transfer failed {} -> {}", from, to, e);
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void seed(JdbcTemplate template, MemberRepository memberRepository) {
+        template.update("delete from member where member_id like '" + ID_PREFIX + "%'");
+        List<Member> seeded = new ArrayList<>(members);
+        for (int i = 0; i < members; i++) {
+            seeded.add(new Member(ID_PREFIX + i, INITIAL_MONEY));
+        }
+        memberRepository.saveAll(seeded);
+    }
+
+    private static long totalMoney(JdbcTemplate template) {
+        Long total = template.queryForObject(
+                "select coalesce(sum(cast(money as bigint)), 0) from member where member_id like '" + ID_PREFIX + "%'", Long.class);
+        return total;
+    }
+
+    private ExecutorService newExecutor() {
+        return virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(threads);
+    }
+
+    private void report(double elapsedSeconds, long expectedTotal, long actualTotal) {
+        long attempts = latency.getCount();
+        System.out.printf("operation=%s, members=%d, threads=%d (%s), hotKeys=%d, hotKeyRatio=%.2f, poolSize=%d%n",
+                operation, members, threads, virtual ? "virtual" : "platform", hotKeys, hotKeyRatio, poolSize);
+        System.out.printf("attempts=%d, committed=%d, throughput=%.1f tx/s%n",
+                attempts, committed.sum(), committed.sum() / elapsedSeconds);
+        System.out.printf("deadlocks=%d, lockTimeouts=%d, otherFailures=%d%n",
+                deadlocks.sum(), lockTimeouts.sum(), otherFailures.sum());
+        if (retry) {
+            System.out.printf("retries=%s, exhausted=%d, budgetRejected=%d%n", retryInterceptor.getRetryCounts(),
+                    retryInterceptor.getExhaustedCount(), retryInterceptor.getBudgetRejectedCount());
+        }
+        System.out.println("latency " + latency);
+        System.out.printf("total money expected=%d, actual=%d, %s%n",
+                expectedTotal, actualTotal, expectedTotal == actualTotal ? "conserved" : "LOST " + (expectedTotal - actualTotal));
+    }
+
+}
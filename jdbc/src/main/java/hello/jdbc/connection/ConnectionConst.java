@@ -6,4 +6,11 @@ public abstract class ConnectionConst {
     public static final String USERNAME = "sa";
     public static final String PASSWORD = "";
 
+    //샤드마다 DB 파일을 따로 쓴다 (~/test_shard0, ~/test_shard1 ...)
+    public static final String SHARD_URL_PREFIX = "jdbc:h2:tcp://localhost/~/test_shard";
+
+    public static String shardUrl(int shard) {
+        return SHARD_URL_PREFIX + shard;
+    }
+
 }
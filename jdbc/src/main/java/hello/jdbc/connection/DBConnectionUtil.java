@@ -11,6 +11,12 @@ import static hello.jdbc.connection.ConnectionConst.*;
 @Slf4j
 public class DBConnectionUtil {
 
+    //DriverManager 로 직접 커넥션을 획득할 때 걸린 시간
+    private static final LatencyHistogram driverManagerHistogram = new LatencyHistogram();
+
+    //풀링 모드일 때만 존재한다
+    private static volatile SimpleConnectionPool pool;
+
     /**
      * JDBC 는 java.sql.Connection 표준 커넥션 인터페이스를 정의한다
      * H2 데이터베이스 드라이버는 JDBC Connection 인터페이스를 구현한
@@ -18,11 +24,21 @@ public class DBConnectionUtil {
      */
     public static Connection getConnection(){
         try {
+            SimpleConnectionPool currentPool = pool;
+            if (currentPool != null) {
+                //풀링 모드 - close() 를 호출하면 커넥션이 풀로 반환된다
+                Connection connection = currentPool.getConnection();
+                log.info("get connection = {}, class = {}", connection, connection.getClass());
+                return connection;
+            }
+
             /**
              * DriverManager 는 URL 정보를 체크해서 본인이 처리할 수 있는 요청인지 확인하고
              * 실제 데이터베이스에 연결해서 커넥션을 획득하고 클라이언트에 반환한다
              */
+            long start = System.nanoTime();
             Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+            driverManagerHistogram.record(System.nanoTime() - start);
             log.info("get connection = {}, class = {}", connection, connection.getClass());
             return connection;
         } catch (SQLException e) {
@@ -30,4 +46,35 @@ public class DBConnectionUtil {
         }
     }
 
+    /**
+     * 풀링 모드 사용 - 이후 getConnection() 은 매번 새 커넥션을 만들지 않고 풀에서 커넥션을 빌려준다
+     */
+    public static synchronized void enablePooling(int maxPoolSize) {
+        enablePooling(new SimpleConnectionPool(URL, USERNAME, PASSWORD, maxPoolSize));
+    }
+
+    public static synchronized void enablePooling(SimpleConnectionPool connectionPool) {
+        SimpleConnectionPool previous = pool;
+        pool = connectionPool;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public static synchronized void disablePooling() {
+        enablePooling((SimpleConnectionPool) null);
+    }
+
+    public static boolean isPooling() {
+        return pool != null;
+    }
+
+    /**
+     * 현재 모드의 커넥션 획득 대기 시간 히스토그램
+     */
+    public static LatencyHistogram getAcquireHistogram() {
+        SimpleConnectionPool currentPool = pool;
+        return currentPool != null ? currentPool.getAcquireHistogram() : driverManagerHistogram;
+    }
+
 }
@@ -0,0 +1,257 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 획득/보유 현황을 기록하는 DataSource 데코레이터
+ * - 획득 지연시간: target.getConnection() 에 걸린 시간 (풀 대기 시간)
+ * - 보유 시간: 커넥션을 받은 후 close() 할 때까지의 시간 (트랜잭션이라면 트랜잭션 전체 시간)
+ * - 동시 사용자 수와 최대치, 풀 고갈(획득 타임아웃) 횟수
+ * 모든 값은 락 없이 기록하고 registerMBean() 으로 JMX 에 노출한다. 풀 고갈이 발생하면 JMX 알림도 보낸다
+ */
+@Slf4j
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final LatencyHistogram acquireHistogram = new LatencyHistogram();
+    private final LatencyHistogram holdHistogram = new LatencyHistogram();
+    private final AtomicInteger activeBorrowers = new AtomicInteger();
+    private final AtomicInteger peakBorrowers = new AtomicInteger();
+    private final LongAdder exhaustionCount = new LongAdder();
+    private final LongAdder acquireFailureCount = new LongAdder();
+    private final AtomicLong notificationSequence = new AtomicLong();
+    private final Jmx jmx = new Jmx();
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return borrowed(obtainTargetDataSource().getConnection(), start);
+        } catch (SQLException e) {
+            failed(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return borrowed(obtainTargetDataSource().getConnection(username, password), start);
+        } catch (SQLException e) {
+            failed(e);
+            throw e;
+        }
+    }
+
+    private Connection borrowed(Connection target, long start) {
+        long acquiredAt = System.nanoTime();
+        acquireHistogram.record(acquiredAt - start);
+        int borrowers = activeBorrowers.incrementAndGet();
+        peakBorrowers.accumulateAndGet(borrowers, Math::max);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new HoldTimeHandler(target, acquiredAt));
+    }
+
+    private void failed(SQLException e) {
+        acquireFailureCount.increment();
+        //HikariCP 와 SimpleConnectionPool 모두 획득 타임아웃을 SQLTransientConnectionException 으로 알린다
+        if (e instanceof SQLTransientConnectionException) {
+            exhaustionCount.increment();
+            log.warn("connection pool exhausted, activeBorrowers = {}", activeBorrowers.get());
+            Notification notification = new Notification("hello.jdbc.pool.exhausted", jmx,
+                    notificationSequence.incrementAndGet(), System.currentTimeMillis(), e.getMessage());
+            jmx.sendNotification(notification);
+        }
+    }
+
+    /**
+     * 플랫폼 MBeanServer 에 hello.jdbc:type=DataSource,name={name} 으로 등록한다
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("hello.jdbc:type=DataSource,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(jmx, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public LatencyHistogram getAcquireHistogram() {
+        return acquireHistogram;
+    }
+
+    public LatencyHistogram getHoldHistogram() {
+        return holdHistogram;
+    }
+
+    public int getActiveBorrowers() {
+        return activeBorrowers.get();
+    }
+
+    public int getPeakBorrowers() {
+        return peakBorrowers.get();
+    }
+
+    public long getExhaustionCount() {
+        return exhaustionCount.sum();
+    }
+
+    public long getAcquireFailureCount() {
+        return acquireFailureCount.sum();
+    }
+
+    public void resetStatistics() {
+        acquireHistogram.reset();
+        holdHistogram.reset();
+        peakBorrowers.set(activeBorrowers.get());
+        exhaustionCount.reset();
+        acquireFailureCount.reset();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private class HoldTimeHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final long acquiredAt;
+        private boolean released;
+
+        private HoldTimeHandler(Connection target, long acquiredAt) {
+            this.target = target;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        holdHistogram.record(System.nanoTime() - acquiredAt);
+                        activeBorrowers.decrementAndGet();
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented [" + target + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    private class Jmx extends NotificationBroadcasterSupport implements InstrumentedDataSourceMXBean {
+
+        @Override
+        public long getAcquireCount() {
+            return acquireHistogram.getCount();
+        }
+
+        @Override
+        public double getAcquireMeanMicros() {
+            return acquireHistogram.getMean() / 1000.0;
+        }
+
+        @Override
+        public long getAcquireP99Micros() {
+            return toMicros(acquireHistogram.getPercentile(99));
+        }
+
+        @Override
+        public long getAcquireMaxMicros() {
+            return toMicros(acquireHistogram.getMax());
+        }
+
+        @Override
+        public double getHoldMeanMicros() {
+            return holdHistogram.getMean() / 1000.0;
+        }
+
+        @Override
+        public long getHoldP99Micros() {
+            return toMicros(holdHistogram.getPercentile(99));
+        }
+
+        @Override
+        public long getHoldMaxMicros() {
+            return toMicros(holdHistogram.getMax());
+        }
+
+        @Override
+        public int getActiveBorrowers() {
+            return activeBorrowers.get();
+        }
+
+        @Override
+        public int getPeakBorrowers() {
+            return peakBorrowers.get();
+        }
+
+        @Override
+        public long getExhaustionCount() {
+            return exhaustionCount.sum();
+        }
+
+        @Override
+        public long getAcquireFailureCount() {
+            return acquireFailureCount.sum();
+        }
+
+        @Override
+        public void resetStatistics() {
+            InstrumentedDataSource.this.resetStatistics();
+        }
+    }
+
+}
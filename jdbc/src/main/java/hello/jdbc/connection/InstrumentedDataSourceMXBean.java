@@ -0,0 +1,25 @@
+package hello.jdbc.connection;
+
+/**
+ * InstrumentedDataSource 를 JMX 로 노출하기 위한 인터페이스 (시간 단위는 마이크로초)
+ */
+public interface InstrumentedDataSourceMXBean {
+
+    long getAcquireCount();
+    double getAcquireMeanMicros();
+    long getAcquireP99Micros();
+    long getAcquireMaxMicros();
+
+    double getHoldMeanMicros();
+    long getHoldP99Micros();
+    long getHoldMaxMicros();
+
+    int getActiveBorrowers();
+    int getPeakBorrowers();
+
+    long getExhaustionCount();
+    long getAcquireFailureCount();
+
+    void resetStatistics();
+
+}
@@ -0,0 +1,436 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * DriverManager 위에 올린 단순한 커넥션 풀
+ * - 최대 커넥션 수를 넘지 않는다 (커넥션 생성 수는 CAS 로 예약)
+ * - 반환된 커넥션은 대기 중인 쓰레드에게 CAS 로 직접 넘겨준다. 대기열은 FIFO 라 먼저 기다린 쓰레드가 먼저 받는다
+ * - 유휴 시간(idleTimeout)과 최대 수명(maxLifetime)이 지난 커넥션은 하우스키핑 쓰레드가 정리한다
+ * - 반환할 때 auto commit, 읽기 전용, 격리 수준을 커넥션을 만들 때의 값으로 되돌린다
+ * - 커넥션 획득 대기 시간은 LatencyHistogram 으로 기록한다
+ */
+@Slf4j
+public class SimpleConnectionPool extends AbstractDataSource implements AutoCloseable {
+
+    private static final PooledConnection CANCELLED = new PooledConnection();
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxPoolSize;
+
+    private long connectionTimeoutMs = 30_000;
+    private long idleTimeoutMs = 600_000;
+    private long maxLifetimeMs = 1_800_000;
+
+    private final ConcurrentLinkedQueue<PooledConnection> idle = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LatencyHistogram acquireHistogram = new LatencyHistogram();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public SimpleConnectionPool(String url, String username, String password, int maxPoolSize) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("maxPoolSize must be positive");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxPoolSize = maxPoolSize;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SimpleConnectionPool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::evict, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public void setMaxLifetimeMs(long maxLifetimeMs) {
+        this.maxLifetimeMs = maxLifetimeMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("pool is closed");
+        }
+        long start = System.nanoTime();
+        PooledConnection entry = borrow(start + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMs));
+        acquireHistogram.record(System.nanoTime() - start);
+        activeConnections.incrementAndGet();
+        return newHandle(entry);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (Objects.equals(this.username, username) && Objects.equals(this.password, password)) {
+            return getConnection();
+        }
+        throw new SQLException("SimpleConnectionPool does not support custom username and password");
+    }
+
+    private PooledConnection borrow(long deadline) throws SQLException {
+        //먼저 기다리는 쓰레드가 있으면 새치기하지 않고 대기열 뒤에 선다
+        if (waiters.isEmpty()) {
+            PooledConnection entry = pollIdle();
+            if (entry != null) {
+                return entry;
+            }
+        }
+        PooledConnection created = tryCreate();
+        if (created != null) {
+            return created;
+        }
+
+        Waiter waiter = new Waiter(Thread.currentThread());
+        waiters.offer(waiter);
+        try {
+            while (true) {
+                PooledConnection handed = waiter.slot.get();
+                if (handed != null) {
+                    return handed;
+                }
+                //대기열 맨 앞이면 대기 등록 사이에 반환되거나 정리되어 생긴 여유를 직접 확인한다
+                if (waiters.peek() == waiter) {
+                    PooledConnection entry = pollIdle();
+                    if (entry == null) {
+                        entry = tryCreate();
+                    }
+                    if (entry != null) {
+                        if (waiter.slot.compareAndSet(null, CANCELLED)) {
+                            return entry;
+                        }
+                        //그 사이 다른 쓰레드가 넘겨준 커넥션이 있으니 방금 얻은 것은 돌려놓는다
+                        recycle(entry);
+                        return waiter.slot.get();
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (waiter.slot.compareAndSet(null, CANCELLED)) {
+                        timeoutCount.increment();
+                        throw new SQLTransientConnectionException("connection is not available, request timed out after "
+                                + connectionTimeoutMs + "ms (total=" + totalConnections.get()
+                                + ", active=" + activeConnections.get() + ", waiting=" + waiters.size() + ")");
+                    }
+                    return waiter.slot.get();
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    if (waiter.slot.compareAndSet(null, CANCELLED)) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("interrupted while waiting for a connection");
+                    }
+                    Thread.currentThread().interrupt();
+                    return waiter.slot.get();
+                }
+            }
+        } finally {
+            waiters.remove(waiter);
+            //대기열을 떠나는 쓰레드가 다음 쓰레드를 깨우지 않으면 대기 등록 사이에 유휴 큐로 들어간 커넥션이 방치될 수 있다
+            handOffIdle();
+        }
+    }
+
+    /**
+     * 유휴 큐에 남은 커넥션을 기다리는 쓰레드에게 넘겨준다
+     */
+    private void handOffIdle() {
+        while (!waiters.isEmpty()) {
+            PooledConnection entry = pollIdle();
+            if (entry == null) {
+                return;
+            }
+            Waiter waiter;
+            boolean handed = false;
+            while (!handed && (waiter = waiters.poll()) != null) {
+                if (waiter.slot.compareAndSet(null, entry)) {
+                    LockSupport.unpark(waiter.thread);
+                    handed = true;
+                }
+            }
+            if (!handed) {
+                idle.offer(entry);
+                wakeUpHead();
+                return;
+            }
+        }
+    }
+
+    private PooledConnection pollIdle() {
+        PooledConnection entry;
+        while ((entry = idle.poll()) != null) {
+            if (!isExpired(entry, System.currentTimeMillis())) {
+                return entry;
+            }
+            discard(entry);
+        }
+        return null;
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        while (true) {
+            int total = totalConnections.get();
+            if (total >= maxPoolSize) {
+                return null;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                break;
+            }
+        }
+        try {
+            Connection physical = DriverManager.getConnection(url, username, password);
+            log.debug("create connection = {}", physical);
+            try {
+                return new PooledConnection(physical);
+            } catch (SQLException | RuntimeException e) {
+                physical.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            wakeUpHead();
+            throw e;
+        }
+    }
+
+    /**
+     * 커넥션 반환 - 기다리는 쓰레드가 있으면 유휴 큐를 거치지 않고 바로 넘겨준다
+     */
+    private void recycle(PooledConnection entry) {
+        if (closed || isExpired(entry, System.currentTimeMillis())) {
+            discard(entry);
+            return;
+        }
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.slot.compareAndSet(null, entry)) {
+                LockSupport.unpark(waiter.thread);
+                return;
+            }
+        }
+        entry.lastAccessed = System.currentTimeMillis();
+        idle.offer(entry);
+        //위 poll 이후에 대기열에 들어온 쓰레드가 잠들지 않도록 깨워서 유휴 큐를 다시 확인하게 한다
+        wakeUpHead();
+    }
+
+    private void release(PooledConnection entry) {
+        activeConnections.decrementAndGet();
+        try {
+            //수동 커밋 모드로 돌려받은 경우 진행 중인 트랜잭션을 정리하고 기본값으로 되돌린다
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            //읽기 전용, 격리 수준을 바꾼 경우에만 생성 시점의 값으로 되돌린다 (바꾸지 않았으면 왕복하지 않는다)
+            if (entry.stateChanged) {
+                entry.physical.setReadOnly(entry.defaultReadOnly);
+                entry.physical.setTransactionIsolation(entry.defaultTransactionIsolation);
+                entry.stateChanged = false;
+            }
+        } catch (SQLException e) {
+            log.info("error", e);
+            discard(entry);
+            return;
+        }
+        recycle(entry);
+    }
+
+    private void discard(PooledConnection entry) {
+        totalConnections.decrementAndGet();
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            log.info("error", e);
+        }
+        wakeUpHead();
+    }
+
+    private Connection newHandle(PooledConnection entry) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new HandleInvocationHandler(entry));
+    }
+
+    private void wakeUpHead() {
+        Waiter head = waiters.peek();
+        if (head != null) {
+            LockSupport.unpark(head.thread);
+        }
+    }
+
+    private boolean isExpired(PooledConnection entry, long now) {
+        return now - entry.createdAt >= maxLifetimeMs;
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection entry : idle) {
+            boolean expired = isExpired(entry, now) || now - entry.lastAccessed >= idleTimeoutMs;
+            //remove 에 성공한 쪽만 정리하므로 같은 커넥션을 빌려간 쓰레드와 경쟁하지 않는다
+            if (expired && idle.remove(entry)) {
+                log.debug("evict connection = {}", entry.physical);
+                discard(entry);
+            }
+        }
+    }
+
+    public LatencyHistogram getAcquireHistogram() {
+        return acquireHistogram;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getWaitingThreads() {
+        return waiters.size();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection entry;
+        while ((entry = idle.poll()) != null) {
+            discard(entry);
+        }
+    }
+
+    private static class Waiter {
+        private final Thread thread;
+        private final AtomicReference<PooledConnection> slot = new AtomicReference<>();
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private static class PooledConnection {
+
+        private final Connection physical;
+        private final boolean defaultReadOnly;
+        private final int defaultTransactionIsolation;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastAccessed = createdAt;
+        private boolean stateChanged; //빌려간 쓰레드만 읽고 쓴다
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.defaultReadOnly = physical.isReadOnly();
+            this.defaultTransactionIsolation = physical.getTransactionIsolation();
+        }
+
+        //대기 취소 표시용
+        private PooledConnection() {
+            this.physical = null;
+            this.defaultReadOnly = false;
+            this.defaultTransactionIsolation = Connection.TRANSACTION_NONE;
+        }
+    }
+
+    /**
+     * 사용자에게 넘겨주는 커넥션 핸들 - close() 를 호출하면 실제 커넥션을 닫지 않고 풀에 반환한다
+     */
+    private class HandleInvocationHandler implements InvocationHandler {
+
+        private PooledConnection entry;
+
+        private HandleInvocationHandler(PooledConnection entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (entry != null) {
+                        PooledConnection returned = entry;
+                        entry = null;
+                        release(returned);
+                    }
+                    return null;
+                case "isClosed":
+                    return entry == null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SimpleConnectionPool handle [" + (entry == null ? "closed" : entry.physical) + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                    if (entry != null) {
+                        entry.stateChanged = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (entry == null) {
+                throw new SQLException("connection is closed");
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,283 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 물리 커넥션마다 PreparedStatement 를 LRU 로 캐시하는 DataSource 데코레이터
+ * - prepareStatement(sql) 로 만든 statement 는 close() 해도 닫지 않고 캐시에 남긴다
+ *   열린 ResultSet 을 닫고 파라미터, fetchSize, maxRows, queryTimeout 을 처음 값으로 되돌려서 다음 사용자에게 남기지 않는다
+ * - 같은 커넥션에서 같은 SQL 을 다시 준비하면 서버에 파싱을 다시 요청하지 않고 캐시된 statement 를 재사용한다
+ * - 커넥션을 close() 하면 캐시된 statement 도 모두 닫는다
+ *
+ * 커넥션 풀 아래에 두어야 효과가 있다. 풀이 물리 커넥션을 재사용하는 동안 캐시도 함께 유지되고
+ * DataSourceUtils.releaseConnection() 은 풀의 핸들만 반환하므로 캐시는 그대로 남는다
+ * <pre>
+ * HikariDataSource dataSource = new HikariDataSource();
+ * dataSource.setDataSource(new StatementCachingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD)));
+ * </pre>
+ * 커넥션은 한 번에 한 쓰레드만 사용한다고 가정한다 (풀이 보장)
+ */
+@Slf4j
+public class StatementCachingDataSource extends DelegatingDataSource {
+
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    private final int cacheSize;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public StatementCachingDataSource(DataSource targetDataSource) {
+        this(targetDataSource, DEFAULT_CACHE_SIZE);
+    }
+
+    public StatementCachingDataSource(DataSource targetDataSource, int cacheSize) {
+        super(targetDataSource);
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize must be positive");
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrap(Connection target) {
+        CachingConnectionHandler handler = new CachingConnectionHandler(target);
+        Connection proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                handler);
+        handler.proxy = proxy;
+        return proxy;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class CachingConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private Connection proxy;
+
+        //accessOrder = true - 가장 오래 사용하지 않은 statement 부터 밀려난다
+        private final LinkedHashMap<String, CachedStatement> cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > cacheSize) {
+                    evictionCount.increment();
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private CachingConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (args.length == 1) {
+                        return prepare((String) args[0]);
+                    }
+                    break;
+                case "close":
+                    closeCachedStatements();
+                    target.close();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementCaching [" + target + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return invokeTarget(target, method, args);
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            CachedStatement cached = cache.get(sql);
+            if (cached != null && !cached.inUse) {
+                hitCount.increment();
+                cached.inUse = true;
+                return cached.proxy;
+            }
+            missCount.increment();
+            CachedStatement created = new CachedStatement(this, target.prepareStatement(sql));
+            created.inUse = true;
+            if (cached == null) {
+                cache.put(sql, created);
+            } else {
+                //같은 SQL 의 statement 가 아직 사용 중이면 캐시하지 않고 close() 시 실제로 닫는다
+                created.evicted = true;
+            }
+            return created.proxy;
+        }
+
+        private void closeCachedStatements() {
+            for (CachedStatement cached : cache.values()) {
+                JdbcUtils.closeStatement(cached.target);
+            }
+            cache.clear();
+        }
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+
+        private final CachingConnectionHandler owner;
+        private final PreparedStatement target;
+        private final PreparedStatement proxy;
+        private final int defaultFetchSize;
+        private final long defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private final List<ResultSet> openResultSets = new ArrayList<>();
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(CachingConnectionHandler owner, PreparedStatement target) throws SQLException {
+            this.owner = owner;
+            this.target = target;
+            this.defaultFetchSize = target.getFetchSize();
+            this.defaultMaxRows = target.getLargeMaxRows();
+            this.defaultQueryTimeout = target.getQueryTimeout();
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                JdbcUtils.closeStatement(target);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        if (evicted) {
+                            target.close();
+                        } else {
+                            reset();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || target.isClosed();
+                case "getConnection":
+                    return owner.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement [" + target + "]";
+                default:
+                    break;
+            }
+            if (!inUse) {
+                throw new SQLException("statement is closed");
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof ResultSet resultSet) {
+                openResultSets.add(resultSet);
+            }
+            return result;
+        }
+
+        //다음 사용자를 위해 이번 사용자가 남긴 상태를 정리한다. 실패하면 캐시에서 빼고 조용히 닫는다 (close() 에서 던지지 않는다)
+        private void reset() {
+            try {
+                for (ResultSet resultSet : openResultSets) {
+                    JdbcUtils.closeResultSet(resultSet);
+                }
+                openResultSets.clear();
+                target.clearParameters();
+                target.clearWarnings();
+                //H2 는 fetchSize 가 maxRows 보다 크면 거부하므로 maxRows 를 먼저 되돌린다
+                if (target.getLargeMaxRows() != defaultMaxRows) {
+                    target.setLargeMaxRows(defaultMaxRows);
+                }
+                if (target.getFetchSize() != defaultFetchSize) {
+                    target.setFetchSize(defaultFetchSize);
+                }
+                if (target.getQueryTimeout() != defaultQueryTimeout) {
+                    target.setQueryTimeout(defaultQueryTimeout);
+                }
+            } catch (SQLException e) {
+                log.info("failed to reset cached statement, evicting", e);
+                owner.cache.values().remove(this);
+                evicted = true;
+                JdbcUtils.closeStatement(target);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package hello.jdbc.domain;
+
+import lombok.Value;
+
+/**
+ * 이체 요청 한 건 (fromId -> toId 로 money 만큼)
+ */
+@Value
+public class TransferCommand {
+
+    String fromId;
+    String toId;
+    int money;
+
+}
@@ -0,0 +1,338 @@
+package hello.jdbc.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * findById 결과를 캐시하는 MemberRepository 데코레이터 (읽기 시 적재, 쓰기 시 무효화)
+ * - Caffeine(W-TinyLFU) 캐시 - 최대 가중치(대략적인 바이트)와 TTL 로 밀어낸다
+ * - 트랜잭션 안에서 변경한 회원은 커밋/롤백 전까지 캐시를 거치지 않고 캐시에 넣지도 않는다
+ *   커밋되지 않은 값이 다른 쓰레드에 보이지 않고, 트랜잭션이 끝나면 다시 무효화한다
+ * - 조회 중에 같은 구간이 무효화되면 조회한 값을 캐시에 넣지 않는다 (오래된 값이 뒤늦게 들어가는 것을 막는다)
+ */
+@Slf4j
+public class CachingMemberRepository implements MemberRepository {
+
+    //회원 한 건의 대략적인 크기 (객체 헤더 + 필드 + 문자열)
+    private static final int ENTRY_BASE_WEIGHT = 64;
+    private static final int STRIPES = 64;
+
+    private final MemberRepository target;
+    private final Cache<String, Member> cache;
+    private final AtomicLongArray invalidationVersions = new AtomicLongArray(STRIPES);
+
+    public CachingMemberRepository(MemberRepository target, long maximumWeightBytes, Duration timeToLive) {
+        this.target = target;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeightBytes)
+                .weigher((String memberId, Member member) -> ENTRY_BASE_WEIGHT + 2 * memberId.length())
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (isDirtyInTransaction(memberId)) {
+            return target.findById(memberId);
+        }
+        Member cached = cache.getIfPresent(memberId);
+        if (cached != null) {
+            return copy(cached);
+        }
+        long version = versionOf(memberId);
+        Member member = target.findById(memberId);
+        putIfUnchanged(member, version);
+        return member;
+    }
+
+    //락을 거는 조회는 항상 DB 에서 최신 값을 읽는다. 이후 변경에 대비해 트랜잭션이 끝날 때까지 캐시를 사용하지 않는다
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        invalidate(memberId);
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public int findMoneyById(String memberId) {
+        Member cached = isDirtyInTransaction(memberId) ? null : cache.getIfPresent(memberId);
+        if (cached != null) {
+            return cached.getMoney();
+        }
+        return target.findMoneyById(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String memberId : memberIds) {
+            Member cached = isDirtyInTransaction(memberId) ? null : cache.getIfPresent(memberId);
+            if (cached != null) {
+                result.put(memberId, copy(cached));
+            } else {
+                misses.add(memberId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        Map<String, Long> versions = new HashMap<>();
+        for (String memberId : misses) {
+            versions.put(memberId, versionOf(memberId));
+        }
+        for (Member member : target.findAllById(misses).values()) {
+            if (!isDirtyInTransaction(member.getMemberId())) {
+                putIfUnchanged(member, versions.get(member.getMemberId()));
+            }
+            result.put(member.getMemberId(), member);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        memberIds.forEach(this::invalidate);
+        return target.findAllByIdForUpdate(memberIds);
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        return target.streamAll();
+    }
+
+    @Override
+    public void forEach(Consumer<Member> action) {
+        target.forEach(action);
+    }
+
+    @Override
+    public Member save(Member member) {
+        try {
+            return target.save(member);
+        } finally {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        try {
+            return target.saveOrUpdate(member);
+        } finally {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        try {
+            return target.insertIfAbsent(member);
+        } finally {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        try {
+            target.update(memberId, money);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void addMoney(String memberId, int delta, boolean requireNonNegative) {
+        try {
+            target.addMoney(memberId, delta, requireNonNegative);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int amount) {
+        try {
+            target.transfer(fromId, toId, amount);
+        } finally {
+            invalidate(fromId);
+            invalidate(toId);
+        }
+    }
+
+    @Override
+    public void delete(String memberId) {
+        try {
+            target.delete(memberId);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public List<Member> saveAll(List<Member> members) {
+        try {
+            return target.saveAll(members);
+        } finally {
+            invalidateMembers(members);
+        }
+    }
+
+    @Override
+    public void updateAll(List<Member> members) {
+        try {
+            target.updateAll(members);
+        } finally {
+            invalidateMembers(members);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> memberIds) {
+        try {
+            target.deleteAll(memberIds);
+        } finally {
+            memberIds.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public List<Member> saveOrUpdateAll(List<Member> members) {
+        try {
+            return target.saveOrUpdateAll(members);
+        } finally {
+            invalidateMembers(members);
+        }
+    }
+
+    @Override
+    public int insertAllIfAbsent(List<Member> members) {
+        try {
+            return target.insertAllIfAbsent(members);
+        } finally {
+            invalidateMembers(members);
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    public long getEstimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            invalidationVersions.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private void invalidateMembers(List<Member> members) {
+        for (Member member : members) {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    /**
+     * 지금 바로 무효화하고, 트랜잭션 안이라면 트랜잭션이 끝날 때 한 번 더 무효화한다
+     */
+    private void invalidate(String memberId) {
+        evict(memberId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            dirtyMemberIds().add(memberId);
+        }
+    }
+
+    private void evict(String memberId) {
+        invalidationVersions.incrementAndGet(stripeOf(memberId));
+        cache.invalidate(memberId);
+    }
+
+    private void putIfUnchanged(Member member, long version) {
+        //조회하는 동안 무효화가 일어났다면 조회한 값이 이미 오래된 값일 수 있다
+        if (versionOf(member.getMemberId()) == version) {
+            cache.put(member.getMemberId(), copy(member));
+        }
+    }
+
+    private long versionOf(String memberId) {
+        return invalidationVersions.get(stripeOf(memberId));
+    }
+
+    private static int stripeOf(String memberId) {
+        return (memberId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private boolean isDirtyInTransaction(String memberId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> dirty = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        return dirty != null && dirty.contains(memberId);
+    }
+
+    /**
+     * 현재 트랜잭션에서 변경한 회원 id 목록. 처음 변경할 때 트랜잭션 동기화에 등록한다
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> dirtyMemberIds() {
+        Set<String> dirty = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (dirty != null) {
+            return dirty;
+        }
+        Set<String> created = new HashSet<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(CachingMemberRepository.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(CachingMemberRepository.this, created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+                created.forEach(CachingMemberRepository.this::evict);
+            }
+        });
+        return created;
+    }
+
+    private static Member copy(Member member) {
+        return new Member(member.getMemberId(), member.getMoney());
+    }
+
+}
@@ -0,0 +1,104 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.repository.ex.InsufficientMoneyException;
+import hello.jdbc.repository.ex.MemberNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * H2 에 등록하는 이체 함수 (CREATE ALIAS)
+ * - 출금, 입금, 잔액/존재 검증을 DB 안에서 한 번의 호출로 처리한다. 클라이언트-서버 왕복은 한 번뿐이다
+ * - 함수 안에서 예외가 나도 H2 는 그 전에 실행한 update 를 되돌리지 않는다 (auto commit 에서도 마찬가지)
+ *   그래서 입금을 먼저 하고(받는 회원이 없으면 아무것도 바뀌지 않는다), 출금이 실패하면 입금을 직접 되돌린 뒤 예외를 던진다
+ * - 소스 코드로 등록하므로 TCP 서버의 클래스패스에 애플리케이션 클래스가 없어도 된다 (서버가 직접 컴파일)
+ */
+@Slf4j
+public abstract class H2TransferFunction {
+
+    public static final String FUNCTION_NAME = "MEMBER_TRANSFER";
+    public static final String CALL_SQL = "call " + FUNCTION_NAME + "(?, ?, ?)";
+
+    //함수가 던지는 예외의 SQLState - 리포지토리에서 도메인 예외로 바꿀 때 사용
+    static final String INSUFFICIENT_MONEY_STATE = "45001";
+    static final String RECEIVER_NOT_FOUND_STATE = "45002";
+    static final String SENDER_NOT_FOUND_STATE = "45003";
+
+    private static final String SOURCE = """
+            int transfer(java.sql.Connection conn, String fromId, String toId, int amount) throws java.sql.SQLException {
+                if (amount <= 0) {
+                    throw new java.sql.SQLException("amount must be positive: " + amount, "22003");
+                }
+                //입금을 먼저 한다 - 받는 회원이 없으면 아무것도 바뀌지 않은 상태로 실패한다
+                try (java.sql.PreparedStatement credit = conn.prepareStatement(
+                        "update member set money = money + ? where member_id = ?")) {
+                    credit.setInt(1, amount);
+                    credit.setString(2, toId);
+                    if (credit.executeUpdate() == 0) {
+                        throw new java.sql.SQLException("member not found memberId = " + toId, "%s");
+                    }
+                }
+                try (java.sql.PreparedStatement debit = conn.prepareStatement(
+                        "update member set money = money - ? where member_id = ? and money >= ?")) {
+                    debit.setInt(1, amount);
+                    debit.setString(2, fromId);
+                    debit.setInt(3, amount);
+                    if (debit.executeUpdate() == 0) {
+                        //출금 실패 - 입금을 되돌린 뒤 원인을 알린다
+                        try (java.sql.PreparedStatement undo = conn.prepareStatement(
+                                "update member set money = money - ? where member_id = ?")) {
+                            undo.setInt(1, amount);
+                            undo.setString(2, toId);
+                            undo.executeUpdate();
+                        }
+                        try (java.sql.PreparedStatement exists = conn.prepareStatement(
+                                "select count(*) from member where member_id = ?")) {
+                            exists.setString(1, fromId);
+                            java.sql.ResultSet rs = exists.executeQuery();
+                            if (rs.next() && rs.getInt(1) > 0) {
+                                throw new java.sql.SQLException("insufficient money memberId = " + fromId, "%s");
+                            }
+                        }
+                        throw new java.sql.SQLException("member not found memberId = " + fromId, "%s");
+                    }
+                }
+                return amount;
+            }
+            """.formatted(RECEIVER_NOT_FOUND_STATE, INSUFFICIENT_MONEY_STATE, SENDER_NOT_FOUND_STATE);
+
+    /**
+     * 함수를 등록한다. 이미 있으면 현재 소스로 다시 등록한다 (DB 파일에 이전 버전이 남아 있을 수 있다)
+     */
+    public static void register(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("drop alias if exists " + FUNCTION_NAME);
+        template.execute("create alias " + FUNCTION_NAME + " as $$" + SOURCE + "$$");
+        log.info("registered h2 function {}", FUNCTION_NAME);
+    }
+
+    /**
+     * 함수가 던진 검증 실패를 도메인 예외로 바꾼다. 검증 실패가 아니면 null
+     * 어느 회원이 없는지는 SQLState 로 구분한다 (메시지는 드라이버가 덧붙이는 내용이 있어서 파싱하지 않는다)
+     */
+    static RuntimeException translate(SQLException e, String fromId, String toId, boolean writableStackTrace) {
+        if (INSUFFICIENT_MONEY_STATE.equals(e.getSQLState())) {
+            return new InsufficientMoneyException(e.getMessage(), e);
+        }
+        if (SENDER_NOT_FOUND_STATE.equals(e.getSQLState())) {
+            return notFound(fromId, e, writableStackTrace);
+        }
+        if (RECEIVER_NOT_FOUND_STATE.equals(e.getSQLState())) {
+            return notFound(toId, e, writableStackTrace);
+        }
+        return null;
+    }
+
+    private static MemberNotFoundException notFound(String memberId, SQLException cause, boolean writableStackTrace) {
+        MemberNotFoundException ex = new MemberNotFoundException(memberId, writableStackTrace);
+        ex.initCause(cause);
+        return ex;
+    }
+
+}
@@ -0,0 +1,67 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * IN 절 조회를 고정된 크기의 청크로 나누는 공통 로직
+ * - 청크 크기를 몇 가지(1, 4, 16, 64, 256)로만 제한해서 SQL 문자열 종류가 늘어나지 않게 한다
+ *   (statement 캐시와 DB 의 실행 계획 캐시가 작게 유지된다)
+ * - 남는 자리는 마지막 id 를 반복해서 채운다. IN 절이라 결과는 달라지지 않는다
+ */
+abstract class InListUtils {
+
+    static final int[] BUCKET_SIZES = {1, 4, 16, 64, 256};
+    static final int MAX_BUCKET_SIZE = BUCKET_SIZES[BUCKET_SIZES.length - 1];
+
+    private static final String[] PLACEHOLDERS = new String[BUCKET_SIZES.length];
+
+    static {
+        for (int i = 0; i < BUCKET_SIZES.length; i++) {
+            PLACEHOLDERS[i] = "(" + String.join(", ", Collections.nCopies(BUCKET_SIZES[i], "?")) + ")";
+        }
+    }
+
+    /**
+     * 중복을 제거한 id 들을 버킷 크기에 맞춘 청크 목록으로 나눈다
+     */
+    static List<List<String>> chunk(Collection<String> ids) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += MAX_BUCKET_SIZE) {
+            List<String> chunk = new ArrayList<>(distinct.subList(from, Math.min(from + MAX_BUCKET_SIZE, distinct.size())));
+            int bucketSize = bucketSize(chunk.size());
+            String last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < bucketSize) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * prefix + (?, ?, ...) 형태의 SQL. size 는 chunk() 가 만든 청크 크기여야 한다
+     */
+    static String sql(String prefix, int size) {
+        for (int i = 0; i < BUCKET_SIZES.length; i++) {
+            if (BUCKET_SIZES[i] == size) {
+                return prefix + PLACEHOLDERS[i];
+            }
+        }
+        throw new IllegalArgumentException("not a bucket size: " + size);
+    }
+
+    private static int bucketSize(int size) {
+        for (int bucketSize : BUCKET_SIZES) {
+            if (bucketSize >= size) {
+                return bucketSize;
+            }
+        }
+        return MAX_BUCKET_SIZE;
+    }
+
+}
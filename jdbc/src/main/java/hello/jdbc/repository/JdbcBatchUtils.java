@@ -0,0 +1,116 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+
+/**
+ * 직접 JDBC 를 사용하는 리포지토리의 배치 실행 공통 로직
+ */
+@Slf4j
+abstract class JdbcBatchUtils {
+
+    @FunctionalInterface
+    interface ParameterBinder<T> {
+        void bind(PreparedStatement pstmt, T item) throws SQLException;
+    }
+
+    /**
+     * items 를 batchSize 건씩 addBatch/executeBatch 로 실행한다
+     * - 트랜잭션 밖(자동 커밋 모드)에서 호출되면 청크마다 한 번만 커밋한다
+     *   실패하면 실패한 청크만 롤백된다. 앞 청크는 이미 커밋되어 남는다 (MemberRepository.saveAll 참고)
+     * - 이미 트랜잭션이 진행 중이면 커밋은 트랜잭션에 맡긴다
+     * 반영된 전체 행 수를 반환한다
+     */
+    static <T> int executeBatch(Connection con, String sql, Collection<T> items, int batchSize,
+                                 ParameterBinder<T> binder) throws SQLException {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        boolean autoCommit = con.getAutoCommit();
+        PreparedStatement pstmt = null;
+        SQLException failure = null;
+        int offset = 0;
+        int affected = 0;
+        try {
+            if (autoCommit) {
+                con.setAutoCommit(false);
+            }
+            pstmt = con.prepareStatement(sql);
+            int count = 0;
+            for (T item : items) {
+                binder.bind(pstmt, item);
+                pstmt.addBatch();
+                if (++count % batchSize == 0) {
+                    affected += flush(con, pstmt, autoCommit);
+                    offset = count;
+                }
+            }
+            if (count % batchSize != 0) {
+                affected += flush(con, pstmt, autoCommit);
+            }
+            return affected;
+        } catch (SQLException e) {
+            log.error("batch failed, chunk offset = {}, sql = {}", offset, sql);
+            failure = e;
+            if (autoCommit) {
+                rollbackQuietly(con, e);
+            }
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            if (autoCommit) {
+                restoreAutoCommit(con, failure);
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Connection con, SQLException cause) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    //원래 예외가 있으면 그 예외를 가리지 않도록 suppressed 로 붙인다
+    private static void restoreAutoCommit(Connection con, SQLException cause) throws SQLException {
+        try {
+            con.setAutoCommit(true);
+        } catch (SQLException e) {
+            if (cause == null) {
+                throw e;
+            }
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static int flush(Connection con, PreparedStatement pstmt, boolean autoCommit) throws SQLException {
+        int affected = sum(pstmt.executeBatch());
+        if (autoCommit) {
+            con.commit();
+        }
+        return affected;
+    }
+
+    /**
+     * executeBatch 결과의 합계. 드라이버가 건수를 모르는 경우(SUCCESS_NO_INFO)는 1 건으로 센다
+     */
+    static int sum(int[] updateCounts) {
+        int sum = 0;
+        for (int updateCount : updateCounts) {
+            if (updateCount > 0) {
+                sum += updateCount;
+            } else if (updateCount == Statement.SUCCESS_NO_INFO) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,44 @@
+package hello.jdbc.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 열려있는 ResultSet 을 커서로 한 행씩 읽는 Stream 으로 감싸는 공통 로직
+ * - 행을 미리 모아두지 않으므로 테이블 크기와 상관없이 fetchSize 만큼만 메모리에 올라온다
+ * - Stream 을 close() 해야 ResultSet, Statement 를 닫고 커넥션을 반환한다 (try-with-resources 로 사용)
+ */
+abstract class JdbcStreamUtils {
+
+    static <T> Stream<T> stream(ResultSet rs, RowMapper<T> rowMapper, Runnable onClose,
+                                Function<SQLException, RuntimeException> exceptionTranslator) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private int rowNum;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.mapRow(rs, rowNum++));
+                    return true;
+                } catch (SQLException e) {
+                    throw exceptionTranslator.apply(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(onClose);
+    }
+
+}
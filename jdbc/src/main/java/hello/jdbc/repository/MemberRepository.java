@@ -2,11 +2,98 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 public interface MemberRepository {
 
+    //배치 쓰기 시 한 번에 executeBatch 로 보내는 기본 건수
+    int DEFAULT_BATCH_SIZE = 1000;
+    //전체 조회 시 커서가 한 번에 가져오는 기본 행 수
+    int DEFAULT_FETCH_SIZE = 500;
+
     Member save(Member member);
+
+    /**
+     * 있으면 변경하고 없으면 저장한다 (MERGE INTO). 키 중복 예외가 발생하지 않는다
+     */
+    Member saveOrUpdate(Member member);
+
+    /**
+     * 같은 id 가 없을 때만 저장하고 저장했는지 여부를 반환한다
+     * 키 중복 예외를 잡아서 복구하는 흐름 없이 결과 값으로 분기할 수 있다
+     */
+    boolean insertIfAbsent(Member member);
+
     Member findById(String memberId);
+
+    /**
+     * select ... for update 로 행 락을 걸고 조회한다. 트랜잭션 안에서 호출해야 커밋/롤백까지 락이 유지된다
+     */
+    Member findByIdForUpdate(String memberId);
+
+    //잔액만 필요한 경우 - Member 객체를 만들지 않는다
+    int findMoneyById(String memberId);
+
+    /**
+     * 여러 회원을 IN 절로 한 번에 조회한다. 존재하지 않는 id 는 결과에 포함되지 않는다
+     */
+    Map<String, Member> findAllById(Collection<String> memberIds);
+
+    /**
+     * 여러 회원을 한 번의 for update 조회로 잠근다. 항상 member_id 순서로 잠그므로
+     * 같은 회원들을 잠그는 트랜잭션끼리 서로 반대 순서로 기다리는 교착 상태가 생기지 않는다
+     */
+    Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds);
+
+    /**
+     * 전체 회원을 커서로 한 행씩 읽는다. 테이블 크기와 상관없이 메모리 사용량이 일정하다
+     * 반환된 Stream 은 반드시 close() 해야 커넥션이 반환된다 (try-with-resources 로 사용)
+     * 끝까지 읽어도 자동으로 닫히지 않는다. 닫지 않은 Stream 은 커넥션과 함께 구현체의 다른 작업(샤드 추가 등)도 막을 수 있다
+     */
+    Stream<Member> streamAll();
+
+    default void forEach(Consumer<Member> action) {
+        try (Stream<Member> members = streamAll()) {
+            members.forEach(action);
+        }
+    }
+
     void update(String memberId, int money);
+
+    /**
+     * 현재 잔액에 delta 를 더한다 (money = money + delta). 변경 전에 조회할 필요가 없다
+     * requireNonNegative 가 true 면 결과 잔액이 음수가 될 때 변경하지 않고 InsufficientMoneyException 을 던진다
+     * 회원이 없으면 NoSuchElementException
+     */
+    void addMoney(String memberId, int delta, boolean requireNonNegative);
+
+    default void addMoney(String memberId, int delta) {
+        addMoney(memberId, delta, false);
+    }
+
+    /**
+     * DB 에 등록된 이체 함수를 한 번 호출해서 출금, 입금, 검증을 처리한다 (H2TransferFunction.register 필요)
+     * 잔액 부족은 InsufficientMoneyException, 회원이 없으면 NoSuchElementException
+     */
+    void transfer(String fromId, String toId, int amount);
+
     void delete(String memberId);
 
+    /**
+     * 배치 쓰기 - batchSize 건씩 묶어서 한 번의 왕복으로 보낸다
+     * 실패하면 단건 메서드와 같은 방식으로 변환된 예외를 던진다
+     * 트랜잭션 밖에서 호출하면 청크(batchSize 건)마다 커밋한다. 중간 청크가 실패하면 앞 청크는 이미 반영된 채로 남는다
+     * 전부 반영되거나 전부 취소되어야 하면 트랜잭션 안에서 호출한다
+     */
+    List<Member> saveAll(List<Member> members);
+    void updateAll(List<Member> members);
+    void deleteAll(Collection<String> memberIds);
+    List<Member> saveOrUpdateAll(List<Member> members);
+    //새로 저장된 건수를 반환한다
+    int insertAllIfAbsent(List<Member> members);
+
 }
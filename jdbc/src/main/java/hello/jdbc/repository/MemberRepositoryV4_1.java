@@ -1,14 +1,22 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ex.InsufficientMoneyException;
+import hello.jdbc.repository.ex.MemberNotFoundException;
 import hello.jdbc.repository.ex.MyDbException;
+import hello.jdbc.repository.ex.MyDuplicateKeyException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 @Slf4j
 public class MemberRepositoryV4_1 implements MemberRepository {
@@ -16,9 +24,22 @@ public class MemberRepositoryV4_1 implements MemberRepository {
     //예외 누수 문제 해결
 
    private final DataSource dataSource;
+   private final int batchSize;
+   private final boolean stacklessExceptions; //예상된 실패(키 중복, 회원 없음)를 스택 트레이스 없이 던진다
+   private int fetchSize = DEFAULT_FETCH_SIZE;
 
     public MemberRepositoryV4_1(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV4_1(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, false);
+    }
+
+    public MemberRepositoryV4_1(DataSource dataSource, int batchSize, boolean stacklessExceptions) {
         this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.stacklessExceptions = stacklessExceptions;
     }
 
     @Override
@@ -37,16 +58,136 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt.executeUpdate();
             return member;
         }catch (SQLException e){
+            if (e.getErrorCode() == 23505) {
+                throw new MyDuplicateKeyException("duplicate key memberId = " + member.getMemberId(), e, !stacklessExceptions);
+            }
             throw new MyDbException(e); //기존 예외를 꼭 포함하자
         }finally{
             close(conn, pstmt, null);
         }
     }
 
+    @Override
+    public Member saveOrUpdate(Member member) {
+
+        String sql = "merge into member(member_id, money) key(member_id) values(?, ?)";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            pstmt.executeUpdate();
+            return member;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+
+        String sql = "merge into member m using (select cast(? as varchar) member_id, cast(? as integer) money) s " +
+                "on m.member_id = s.member_id " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 23505) {
+                return false; //동시에 같은 id 가 저장된 경우
+            }
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public List<Member> saveOrUpdateAll(List<Member> members) {
+
+        String sql = "merge into member(member_id, money) key(member_id) values(?, ?)";
+
+        Connection con = null;
+
+        try {
+            con = getConnection();
+            JdbcBatchUtils.executeBatch(con, sql, members, batchSize, (pstmt, member) -> {
+                pstmt.setString(1, member.getMemberId());
+                pstmt.setInt(2, member.getMoney());
+            });
+            return members;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, null, null);
+        }
+    }
+
+    @Override
+    public int insertAllIfAbsent(List<Member> members) {
+
+        String sql = "merge into member m using (select cast(? as varchar) member_id, cast(? as integer) money) s " +
+                "on m.member_id = s.member_id " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+
+        Connection con = null;
+
+        try {
+            con = getConnection();
+            return JdbcBatchUtils.executeBatch(con, sql, members, batchSize, (pstmt, member) -> {
+                pstmt.setString(1, member.getMemberId());
+                pstmt.setInt(2, member.getMoney());
+            });
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, null, null);
+        }
+    }
+
     @Override
     public Member findById(String memberId) {
 
-        String sql = "select * from member where member_id = ?";
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return MemberRowMapper.INSTANCE.mapRow(rs, 0);
+            } else {
+                throw new MemberNotFoundException(memberId, !stacklessExceptions);
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e); //기존 예외를 꼭 포함하자
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    //트랜잭션 안에서 호출해야 커밋/롤백까지 락이 유지된다
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ? for update";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -57,12 +198,9 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt.setString(1, memberId);
             rs = pstmt.executeQuery();
             if (rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
-                return member;
+                return MemberRowMapper.INSTANCE.mapRow(rs, 0);
             } else {
-                throw new NoSuchElementException("member not found memberId = " + memberId);
+                throw new MemberNotFoundException(memberId, !stacklessExceptions);
             }
         } catch (SQLException e) {
             throw new MyDbException(e); //기존 예외를 꼭 포함하자
@@ -71,6 +209,106 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public int findMoneyById(String memberId) {
+
+        String sql = "select money from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt(1);
+            } else {
+                throw new MemberNotFoundException(memberId, !stacklessExceptions);
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+
+        String sql = null;
+
+        Map<String, Member> result = new HashMap<>();
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = getConnection();
+            //청크마다 한 번의 왕복으로 조회한다
+            for (List<String> chunk : InListUtils.chunk(memberIds)) {
+                sql = InListUtils.sql("select " + MemberRowMapper.COLUMNS + " from member where member_id in ", chunk.size());
+                pstmt = con.prepareStatement(sql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                rs = pstmt.executeQuery();
+                int rowNum = 0;
+                while (rs.next()) {
+                    Member member = MemberRowMapper.INSTANCE.mapRow(rs, rowNum++);
+                    result.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(pstmt);
+                rs = null;
+                pstmt = null;
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds) {
+
+        String sql = null;
+
+        Map<String, Member> result = new HashMap<>();
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = getConnection();
+            //id 순서로 정렬해서 청크 순서와 청크 안의 잠금 순서를 항상 같게 한다 (교착 상태 방지)
+            for (List<String> chunk : InListUtils.chunk(new TreeSet<>(memberIds))) {
+                sql = InListUtils.sql("select " + MemberRowMapper.COLUMNS + " from member where member_id in ", chunk.size())
+                        + " order by member_id for update";
+                pstmt = con.prepareStatement(sql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                rs = pstmt.executeQuery();
+                int rowNum = 0;
+                while (rs.next()) {
+                    Member member = MemberRowMapper.INSTANCE.mapRow(rs, rowNum++);
+                    result.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(pstmt);
+                rs = null;
+                pstmt = null;
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
     @Override
     public void update(String memberId, int money) {
 
@@ -93,6 +331,81 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public void addMoney(String memberId, int delta, boolean requireNonNegative) {
+
+        //조회 없이 DB 에서 바로 더한다 - 동시에 실행되어도 갱신이 유실되지 않는다
+        String sql = requireNonNegative
+                ? "update member set money = money + ? where member_id = ? and money + ? >= 0"
+                : "update member set money = money + ? where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            if (requireNonNegative) {
+                pstmt.setInt(3, delta);
+            }
+            int resultSize = pstmt.executeUpdate();
+            if (resultSize == 0) {
+                //실패한 경우에만 원인을 구분하기 위해 한 번 더 조회한다
+                if (requireNonNegative && exists(con, memberId)) {
+                    throw new InsufficientMoneyException("insufficient money memberId = " + memberId + ", delta = " + delta);
+                }
+                throw new MemberNotFoundException(memberId, !stacklessExceptions);
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    private boolean exists(Connection con, String memberId) throws SQLException {
+        String sql = "select count(*) from member where member_id = ?";
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+            return rs.next() && rs.getInt(1) > 0;
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+        }
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int amount) {
+
+        String sql = H2TransferFunction.CALL_SQL;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, fromId);
+            pstmt.setString(2, toId);
+            pstmt.setInt(3, amount);
+            pstmt.execute();
+        } catch (SQLException e) {
+            RuntimeException validationFailure = H2TransferFunction.translate(e, fromId, toId, !stacklessExceptions);
+            if (validationFailure != null) {
+                throw validationFailure;
+            }
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     @Override
     public void delete(String memberId) {
 
@@ -113,6 +426,94 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public List<Member> saveAll(List<Member> members) {
+
+        String sql = "insert into member(member_id, money) values(?, ?)";
+
+        Connection con = null;
+
+        try {
+            con = getConnection();
+            JdbcBatchUtils.executeBatch(con, sql, members, batchSize, (pstmt, member) -> {
+                pstmt.setString(1, member.getMemberId());
+                pstmt.setInt(2, member.getMoney());
+            });
+            return members;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, null, null);
+        }
+    }
+
+    @Override
+    public void updateAll(List<Member> members) {
+
+        String sql = "update member set money=? where member_id=?";
+
+        Connection con = null;
+
+        try {
+            con = getConnection();
+            JdbcBatchUtils.executeBatch(con, sql, members, batchSize, (pstmt, member) -> {
+                pstmt.setInt(1, member.getMoney());
+                pstmt.setString(2, member.getMemberId());
+            });
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, null, null);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> memberIds) {
+
+        String sql = "delete from member where member_id=?";
+
+        Connection con = null;
+
+        try {
+            con = getConnection();
+            JdbcBatchUtils.executeBatch(con, sql, memberIds, batchSize,
+                    (pstmt, memberId) -> pstmt.setString(1, memberId));
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, null, null);
+        }
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = getConnection();
+            //전방향, 읽기 전용 커서 - fetchSize 만큼씩 나눠서 가져온다
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            close(con, pstmt, rs);
+            throw new MyDbException(e);
+        }
+
+        Connection openCon = con;
+        PreparedStatement openPstmt = pstmt;
+        ResultSet openRs = rs;
+        return JdbcStreamUtils.stream(rs, MemberRowMapper.INSTANCE, () -> close(openCon, openPstmt, openRs), MyDbException::new);
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     private void close(Connection conn, Statement stmt, ResultSet rs){
         JdbcUtils.closeResultSet(rs);
         JdbcUtils.closeStatement(stmt);
@@ -1,20 +1,52 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ex.InsufficientMoneyException;
+import hello.jdbc.repository.ex.MemberNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 public class MemberRepositoryV5 implements MemberRepository {
 
     //JDBC Template 사용 - 커넥션하고 쿼리 실행하고 결과 바인딩하고 예외 변환하고 리소스 닫고 다 해준다
    private final JdbcTemplate jdbcTemplate;
+   private final JdbcTemplate streamingJdbcTemplate; //스트리밍 조회 전용 - fetchSize 를 따로 설정
+   private final int batchSize;
+   private final boolean stacklessExceptions; //예상된 실패(키 중복, 회원 없음)를 스택 트레이스 없이 던진다
 
     public MemberRepositoryV5(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, false);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize, boolean stacklessExceptions) {
+        //JdbcTemplate 의 기본 예외 변환기는 첫 실패 때 메타데이터를 읽는다 - 생성 시점에 미리 만들어 둔다
+        SQLExceptionTranslator exceptionTranslator = new PrecomputedSQLExceptionTranslator(dataSource, stacklessExceptions);
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setExceptionTranslator(exceptionTranslator);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setExceptionTranslator(exceptionTranslator);
+        this.streamingJdbcTemplate.setFetchSize(DEFAULT_FETCH_SIZE);
+        this.batchSize = batchSize;
+        this.stacklessExceptions = stacklessExceptions;
     }
 
     @Override
@@ -24,19 +56,121 @@ public class MemberRepositoryV5 implements MemberRepository {
         return member;
     }
 
+    @Override
+    public Member saveOrUpdate(Member member) {
+        String sql = "merge into member(member_id, money) key(member_id) values(?, ?)";
+        jdbcTemplate.update(sql, member.getMemberId(), member.getMoney());
+        return member;
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        String sql = "merge into member m using (select cast(? as varchar) member_id, cast(? as integer) money) s " +
+                "on m.member_id = s.member_id " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+        try {
+            return jdbcTemplate.update(sql, member.getMemberId(), member.getMoney()) > 0;
+        } catch (DuplicateKeyException e) {
+            return false; //동시에 같은 id 가 저장된 경우
+        }
+    }
+
+    @Override
+    public List<Member> saveOrUpdateAll(List<Member> members) {
+        String sql = "merge into member(member_id, money) key(member_id) values(?, ?)";
+        jdbcTemplate.batchUpdate(sql, members, batchSize, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+        return members;
+    }
+
+    @Override
+    public int insertAllIfAbsent(List<Member> members) {
+        String sql = "merge into member m using (select cast(? as varchar) member_id, cast(? as integer) money) s " +
+                "on m.member_id = s.member_id " +
+                "when not matched then insert (member_id, money) values (s.member_id, s.money)";
+        int[][] updateCounts = jdbcTemplate.batchUpdate(sql, members, batchSize, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+        int created = 0;
+        for (int[] chunk : updateCounts) {
+            created += JdbcBatchUtils.sum(chunk);
+        }
+        return created;
+    }
+
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ?";
+        return jdbcTemplate.queryForObject(sql, memberRowMapper(), memberId);
+    }
+
+    //트랜잭션 안에서 호출해야 커밋/롤백까지 락이 유지된다
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ? for update";
         return jdbcTemplate.queryForObject(sql, memberRowMapper(), memberId);
     }
 
+    //Member 를 만들지 않고 잔액만 조회
+    @Override
+    public int findMoneyById(String memberId) {
+        String sql = "select money from member where member_id = ?";
+        Integer money = jdbcTemplate.queryForObject(sql, Integer.class, memberId);
+        return money;
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        for (List<String> chunk : InListUtils.chunk(memberIds)) {
+            String sql = InListUtils.sql("select " + MemberRowMapper.COLUMNS + " from member where member_id in ", chunk.size());
+            for (Member member : jdbcTemplate.query(sql, memberRowMapper(), chunk.toArray())) {
+                result.put(member.getMemberId(), member);
+            }
+        }
+        return result;
+    }
+
+    //id 순서로 정렬해서 청크 순서와 청크 안의 잠금 순서를 항상 같게 한다 (교착 상태 방지)
+    @Override
+    public Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        for (List<String> chunk : InListUtils.chunk(new TreeSet<>(memberIds))) {
+            String sql = InListUtils.sql("select " + MemberRowMapper.COLUMNS + " from member where member_id in ", chunk.size())
+                    + " order by member_id for update";
+            for (Member member : jdbcTemplate.query(sql, memberRowMapper(), chunk.toArray())) {
+                result.put(member.getMemberId(), member);
+            }
+        }
+        return result;
+    }
+
+    //queryForStream 은 Stream 을 close() 할 때 ResultSet, Statement 를 닫고 커넥션을 반환한다
+    @Override
+    public Stream<Member> streamAll() {
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member";
+        return streamingJdbcTemplate.queryForStream(sql, memberRowMapper());
+    }
+
+    @Override
+    public void forEach(Consumer<Member> action) {
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member";
+        RowMapper<Member> rowMapper = memberRowMapper();
+        streamingJdbcTemplate.query(sql, rs -> {
+            action.accept(rowMapper.mapRow(rs, rs.getRow()));
+        });
+    }
+
+    public void setFetchSize(int fetchSize) {
+        streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    //조회 SQL 이 MemberRowMapper.COLUMNS 순서이므로 컬럼 위치로 바로 읽는다
     private RowMapper<Member> memberRowMapper(){
-        return (rs, rowMum) -> {
-            Member member = new Member();
-            member.setMemberId(rs.getString("member_id"));
-            member.setMoney(rs.getInt("money"));
-            return member;
-        };
+        return MemberRowMapper.INSTANCE;
     }
 
     @Override
@@ -45,10 +179,68 @@ public class MemberRepositoryV5 implements MemberRepository {
         jdbcTemplate.update(sql, money, memberId);
     }
 
+    @Override
+    public void addMoney(String memberId, int delta, boolean requireNonNegative) {
+        String sql = requireNonNegative
+                ? "update member set money = money + ? where member_id = ? and money + ? >= 0"
+                : "update member set money = money + ? where member_id = ?";
+        int resultSize = requireNonNegative
+                ? jdbcTemplate.update(sql, delta, memberId, delta)
+                : jdbcTemplate.update(sql, delta, memberId);
+        if (resultSize == 0) {
+            Integer count = jdbcTemplate.queryForObject("select count(*) from member where member_id = ?", Integer.class, memberId);
+            if (requireNonNegative && count != null && count > 0) {
+                throw new InsufficientMoneyException("insufficient money memberId = " + memberId + ", delta = " + delta);
+            }
+            throw new MemberNotFoundException(memberId, !stacklessExceptions);
+        }
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int amount) {
+        try {
+            jdbcTemplate.queryForObject(H2TransferFunction.CALL_SQL, Integer.class, fromId, toId, amount);
+        } catch (DataAccessException e) {
+            if (e.getMostSpecificCause() instanceof SQLException sqlException) {
+                RuntimeException validationFailure = H2TransferFunction.translate(sqlException, fromId, toId, !stacklessExceptions);
+                if (validationFailure != null) {
+                    throw validationFailure;
+                }
+            }
+            throw e;
+        }
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id=?";
         jdbcTemplate.update(sql, memberId);
     }
 
+    //batchUpdate 는 batchSize 건씩 나눠서 executeBatch 하고 실패 시 DataAccessException 으로 변환해준다
+    @Override
+    public List<Member> saveAll(List<Member> members) {
+        String sql = "insert into member(member_id, money) values(?, ?)";
+        jdbcTemplate.batchUpdate(sql, members, batchSize, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+        return members;
+    }
+
+    @Override
+    public void updateAll(List<Member> members) {
+        String sql = "update member set money=? where member_id=?";
+        jdbcTemplate.batchUpdate(sql, members, batchSize, (ps, member) -> {
+            ps.setInt(1, member.getMoney());
+            ps.setString(2, member.getMemberId());
+        });
+    }
+
+    @Override
+    public void deleteAll(Collection<String> memberIds) {
+        String sql = "delete from member where member_id=?";
+        jdbcTemplate.batchUpdate(sql, memberIds, batchSize, (ps, memberId) -> ps.setString(1, memberId));
+    }
+
 }
@@ -0,0 +1,56 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * 컬럼 위치로 Member 를 만드는 RowMapper
+ * - 행마다 컬럼 이름(rs.getString("member_id"))으로 찾지 않고 미리 정한 위치로 읽는다
+ * - COLUMNS 순서로 조회하면 INSTANCE 를, 컬럼 순서를 모르는 SQL 이면 statement 마다 forResultSet() 으로
+ *   위치를 한 번만 찾아서 사용한다
+ */
+public final class MemberRowMapper implements RowMapper<Member> {
+
+    //조회 SQL 의 컬럼 목록 - select * 대신 사용한다
+    public static final String COLUMNS = "member_id, money";
+    public static final MemberRowMapper INSTANCE = new MemberRowMapper(1, 2);
+
+    private final int memberIdColumn;
+    private final int moneyColumn;
+
+    private MemberRowMapper(int memberIdColumn, int moneyColumn) {
+        this.memberIdColumn = memberIdColumn;
+        this.moneyColumn = moneyColumn;
+    }
+
+    /**
+     * ResultSet 의 메타데이터로 컬럼 위치를 한 번 찾는다 (statement 당 한 번)
+     */
+    public static MemberRowMapper forResultSet(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int memberIdColumn = 0;
+        int moneyColumn = 0;
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            String label = metaData.getColumnLabel(column);
+            if ("member_id".equalsIgnoreCase(label)) {
+                memberIdColumn = column;
+            } else if ("money".equalsIgnoreCase(label)) {
+                moneyColumn = column;
+            }
+        }
+        if (memberIdColumn == 0 || moneyColumn == 0) {
+            throw new SQLException("member_id, money columns are required");
+        }
+        return memberIdColumn == 1 && moneyColumn == 2 ? INSTANCE : new MemberRowMapper(memberIdColumn, moneyColumn);
+    }
+
+    @Override
+    public Member mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Member(rs.getString(memberIdColumn), rs.getInt(moneyColumn));
+    }
+
+}
@@ -0,0 +1,202 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * member 테이블 전체를 바이너리 스냅샷 파일로 내보내고 다시 불러온다
+ * 파일 형식 (빅 엔디안)
+ * - 헤더 16 바이트: magic "MSNP", version(int), 회원 수(long)
+ * - 회원마다: id 바이트 길이(varint), id (UTF-8), money (zigzag varint)
+ *
+ * export: streamAll() 커서로 한 건씩 읽어서 direct ByteBuffer 에 모았다가 FileChannel 로 쓴다
+ *         임시 파일에 쓴 뒤 다 쓰면 이름을 바꾸므로 중간에 실패해도 이전 스냅샷이 깨지지 않는다
+ * restore: 파일을 메모리 매핑해서 읽고 batchSize 건씩 saveAll 로 저장한다 (빈 테이블에 불러오는 용도)
+ * 두 경우 모두 메모리는 버퍼/배치 크기만큼만 사용한다
+ */
+@Slf4j
+public class MemberSnapshot {
+
+    private static final int MAGIC = 0x4D534E50; //"MSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_ID_BYTES = 1024;
+    private static final int MAX_RECORD_SIZE = 5 + MAX_ID_BYTES + 5;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    //매핑 한 번의 최대 크기. 남은 크기가 레코드 하나보다 작아지면 그 위치부터 다시 매핑한다
+    private static final long MAX_MAPPING_SIZE = 256L * 1024 * 1024;
+
+    private final MemberRepository memberRepository;
+    private final int batchSize;
+
+    public MemberSnapshot(MemberRepository memberRepository) {
+        this(memberRepository, MemberRepository.DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberSnapshot(MemberRepository memberRepository, int batchSize) {
+        this.memberRepository = memberRepository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return 내보낸 회원 수
+     */
+    public long export(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Stream<Member> members = memberRepository.streamAll()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.position(HEADER_SIZE); //헤더는 회원 수를 안 뒤에 쓴다
+
+            for (Member member : (Iterable<Member>) members::iterator) {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    writeFully(channel, buffer.flip());
+                    buffer.clear();
+                }
+                byte[] id = member.getMemberId().getBytes(StandardCharsets.UTF_8);
+                if (id.length > MAX_ID_BYTES) {
+                    throw new IllegalStateException("member id too long memberId = " + member.getMemberId());
+                }
+                putVarint(buffer, id.length);
+                buffer.put(id);
+                putVarint(buffer, zigzag(member.getMoney()));
+                count++;
+            }
+            writeFully(channel, buffer.flip());
+
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("exported {} members to {}", count, file);
+        return count;
+    }
+
+    /**
+     * 스냅샷의 회원을 batchSize 건씩 saveAll 로 저장한다. 이미 있는 회원이 있으면 중복 키 예외가 난다
+     * 전체를 한 트랜잭션으로 묶으려면 호출하는 쪽에서 트랜잭션을 시작한다
+     * @return 불러온 회원 수
+     */
+    public long restore(Path file) {
+        List<Member> batch = new ArrayList<>(batchSize);
+        long count = read(file, member -> {
+            batch.add(member);
+            if (batch.size() >= batchSize) {
+                memberRepository.saveAll(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            memberRepository.saveAll(batch);
+        }
+        log.info("restored {} members from {}", count, file);
+        return count;
+    }
+
+    /**
+     * 스냅샷 파일을 메모리 매핑해서 회원을 한 건씩 넘긴다
+     * @return 읽은 회원 수
+     */
+    public static long read(Path file, Consumer<Member> action) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_MAPPING_SIZE));
+            if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC) {
+                throw new IllegalStateException("not a member snapshot: " + file);
+            }
+            int version = mapped.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("unsupported snapshot version " + version + ": " + file);
+            }
+            long count = mapped.getLong();
+
+            long mappingStart = 0;
+            byte[] id = new byte[MAX_ID_BYTES];
+            for (long i = 0; i < count; i++) {
+                long position = mappingStart + mapped.position();
+                if (mapped.remaining() < MAX_RECORD_SIZE && mappingStart + mapped.limit() < size) {
+                    mappingStart = position;
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, mappingStart, Math.min(size - mappingStart, MAX_MAPPING_SIZE));
+                }
+                int idLength = getVarint(mapped);
+                //5 바이트 varint 는 음수가 될 수 있다
+                if (idLength < 0 || idLength > MAX_ID_BYTES) {
+                    throw new IllegalStateException("corrupted snapshot at offset " + position + ": " + file);
+                }
+                mapped.get(id, 0, idLength);
+                int money = unzigzag(getVarint(mapped));
+                action.accept(new Member(new String(id, 0, idLength, StandardCharsets.UTF_8), money));
+            }
+            return count;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("truncated snapshot: " + file, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    //7 비트씩 낮은 자리부터, 다음 바이트가 있으면 최상위 비트를 켠다
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("malformed varint");
+    }
+
+    //음수도 작은 값이면 짧게 인코딩되도록 부호 비트를 최하위로 옮긴다
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
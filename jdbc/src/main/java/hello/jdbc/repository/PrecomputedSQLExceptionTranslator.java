@@ -0,0 +1,127 @@
+package hello.jdbc.repository;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.CannotSerializeTransactionException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PermissionDeniedDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.InvalidResultSetAccessException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 에러 코드 -> 예외 생성 함수 표를 미리 만들어두는 SQLExceptionTranslator
+ * - new SQLErrorCodeSQLExceptionTranslator(dataSource) 는 처음 예외가 발생할 때 DB 메타데이터를 조회해서 에러 코드를 읽는다
+ *   첫 실패 요청만 느려지는 것을 막기 위해 생성 시점(애플리케이션 시작)에 에러 코드를 읽는다
+ * - 번역할 때는 에러 코드 배열을 순서대로 검색하지 않고 HashMap 한 번으로 예외 종류를 찾는다
+ * - 표에 없는 에러 코드는 같은 SQLErrorCodes 로 만든 SQLErrorCodeSQLExceptionTranslator 에 맡긴다 (SQLState 기반 분류 등)
+ * - stacklessDuplicateKey 가 true 면 키 중복 예외를 스택 트레이스 없이 만든다.
+ *   키 중복은 insertIfAbsent 처럼 정상 흐름에서 자주 발생하는 예상된 실패이기 때문이다
+ */
+public class PrecomputedSQLExceptionTranslator implements SQLExceptionTranslator {
+
+    private final Map<Integer, ExceptionFactory> errorCodeTable = new HashMap<>();
+    private final SQLExceptionTranslator fallback;
+    private final boolean useSqlStateForTranslation;
+    private final boolean stacklessDuplicateKey;
+
+    public PrecomputedSQLExceptionTranslator(DataSource dataSource) {
+        this(dataSource, false);
+    }
+
+    public PrecomputedSQLExceptionTranslator(DataSource dataSource, boolean stacklessDuplicateKey) {
+        SQLErrorCodes errorCodes = SQLErrorCodesFactory.getInstance().getErrorCodes(dataSource);
+        this.fallback = new SQLErrorCodeSQLExceptionTranslator(errorCodes);
+        this.useSqlStateForTranslation = errorCodes.isUseSqlStateForTranslation();
+        this.stacklessDuplicateKey = stacklessDuplicateKey;
+
+        //SQLErrorCodeSQLExceptionTranslator 와 같은 우선순위 - 먼저 등록한 분류가 이긴다
+        register(errorCodes.getBadSqlGrammarCodes(), (message, sql, e) -> new BadSqlGrammarException(message, sql, e));
+        register(errorCodes.getInvalidResultSetAccessCodes(), (message, sql, e) -> new InvalidResultSetAccessException(message, sql, e));
+        register(errorCodes.getDuplicateKeyCodes(), this::duplicateKey);
+        register(errorCodes.getDataIntegrityViolationCodes(), (message, sql, e) -> new DataIntegrityViolationException(message, e));
+        register(errorCodes.getPermissionDeniedCodes(), (message, sql, e) -> new PermissionDeniedDataAccessException(message, e));
+        register(errorCodes.getDataAccessResourceFailureCodes(), (message, sql, e) -> new DataAccessResourceFailureException(message, e));
+        register(errorCodes.getTransientDataAccessResourceCodes(), (message, sql, e) -> new TransientDataAccessResourceException(message, e));
+        register(errorCodes.getCannotAcquireLockCodes(), (message, sql, e) -> new CannotAcquireLockException(message, e));
+        register(errorCodes.getDeadlockLoserCodes(), PrecomputedSQLExceptionTranslator::deadlockLoser);
+        register(errorCodes.getCannotSerializeTransactionCodes(), PrecomputedSQLExceptionTranslator::cannotSerializeTransaction);
+    }
+
+    @Override
+    public DataAccessException translate(String task, String sql, SQLException ex) {
+        SQLException sqlEx = ex;
+        if (sqlEx instanceof BatchUpdateException && sqlEx.getNextException() != null) {
+            sqlEx = sqlEx.getNextException();
+        }
+        if (!useSqlStateForTranslation) {
+            ExceptionFactory factory = errorCodeTable.get(sqlEx.getErrorCode());
+            if (factory != null) {
+                return factory.create(message(task, sql, sqlEx), sql, sqlEx);
+            }
+        }
+        return fallback.translate(task, sql, ex);
+    }
+
+    private void register(String[] codes, ExceptionFactory factory) {
+        for (String code : codes) {
+            try {
+                errorCodeTable.putIfAbsent(Integer.parseInt(code), factory);
+            } catch (NumberFormatException e) {
+                //숫자가 아닌 코드는 fallback 이 처리한다
+            }
+        }
+    }
+
+    private DataAccessException duplicateKey(String message, String sql, SQLException e) {
+        return stacklessDuplicateKey ? new StacklessDuplicateKeyException(message, e) : new DuplicateKeyException(message, e);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static DataAccessException deadlockLoser(String message, String sql, SQLException e) {
+        return new DeadlockLoserDataAccessException(message, e);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static DataAccessException cannotSerializeTransaction(String message, String sql, SQLException e) {
+        return new CannotSerializeTransactionException(message, e);
+    }
+
+    private static String message(String task, String sql, SQLException e) {
+        return task + "; " + (sql != null ? "SQL [" + sql + "]; " : "") + e.getMessage();
+    }
+
+    @FunctionalInterface
+    private interface ExceptionFactory {
+        DataAccessException create(String message, String sql, SQLException e);
+    }
+
+    /**
+     * 스택 트레이스를 수집하지 않는 DuplicateKeyException. 타입은 그대로라 기존 catch 문이 그대로 동작한다
+     */
+    private static class StacklessDuplicateKeyException extends DuplicateKeyException {
+
+        private StacklessDuplicateKeyException(String message, Throwable cause) {
+            super(message, cause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,493 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * memberId 를 일관된 해싱(consistent hashing)으로 여러 샤드(각각 다른 DB 를 쓰는 MemberRepository) 중 하나로 보내는 MemberRepository
+ * - 샤드마다 VIRTUAL_NODES 개의 가상 노드를 해시 링에 올리고 memberId 의 해시 이후 첫 노드의 샤드를 고른다
+ *   샤드를 추가하면 약 1/N 의 회원만 새 샤드로 옮겨진다
+ * - 여러 회원을 다루는 조회/배치 쓰기는 샤드별로 나눠서 가상 쓰레드에서 동시에 실행한다
+ * - addShard() 는 옮겨야 할 회원을 모두 새 샤드로 복사한 뒤 링을 바꾸고, 그 다음에 원래 샤드에서 지운다
+ *   그동안 다른 호출은 기다린다 (옮기는 중간 상태가 보이지 않는다)
+ * - 전체 조회는 링이 그 샤드로 보내는 회원만 돌려준다 (지우다 실패해서 원래 샤드에 남은 복사본은 보이지 않는다)
+ * - streamAll() 은 연 시점의 링과 샤드를 읽는다. 열린 Stream 이 있으면 addShard() 는 닫힐 때까지 (최대 streamCloseTimeout) 기다린다
+ *
+ * 트랜잭션은 샤드 하나(DataSource 하나) 안에서만 유효하다
+ * 서로 다른 샤드 사이의 transfer() 는 출금 후 입금하고, 입금이 실패하면 출금을 되돌리는 방식이라 원자적이지 않다
+ */
+@Slf4j
+public class ShardedMemberRepository implements MemberRepository, AutoCloseable {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantReadWriteLock rebalanceLock = new ReentrantReadWriteLock();
+    private final ReentrantLock streamLock = new ReentrantLock();
+    private final Condition streamsClosed = streamLock.newCondition();
+    private final int batchSize;
+    private int openStreams; //streamLock 으로 보호
+    private Duration streamCloseTimeout = Duration.ofSeconds(30);
+    private volatile Map<String, MemberRepository> shards;
+    private volatile HashRing ring;
+
+    public ShardedMemberRepository(Map<String, MemberRepository> shards) {
+        this(shards, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param shards 샤드 이름 -> 리포지토리. 이름이 해시 링의 위치를 정하므로 재시작해도 같은 이름을 써야 한다
+     */
+    public ShardedMemberRepository(Map<String, MemberRepository> shards, int batchSize) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.ring = new HashRing(shards.keySet());
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * memberId 가 저장되는 샤드 이름
+     */
+    public String shardOf(String memberId) {
+        return ring.route(memberId);
+    }
+
+    public Map<String, MemberRepository> getShards() {
+        return shards;
+    }
+
+    /**
+     * addShard() 가 열린 streamAll() Stream 이 닫히기를 기다리는 최대 시간
+     */
+    public void setStreamCloseTimeout(Duration streamCloseTimeout) {
+        this.streamCloseTimeout = streamCloseTimeout;
+    }
+
+    @Override
+    public Member save(Member member) {
+        return read(() -> shardFor(member.getMemberId()).save(member));
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        return read(() -> shardFor(member.getMemberId()).saveOrUpdate(member));
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        return read(() -> shardFor(member.getMemberId()).insertIfAbsent(member));
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return read(() -> shardFor(memberId).findById(memberId));
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return read(() -> shardFor(memberId).findByIdForUpdate(memberId));
+    }
+
+    @Override
+    public int findMoneyById(String memberId) {
+        return read(() -> shardFor(memberId).findMoneyById(memberId));
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        return read(() -> {
+            Map<String, Member> result = new HashMap<>();
+            fanOut(groupByShard(memberIds, Function.identity()), MemberRepository::findAllById).forEach(result::putAll);
+            return result;
+        });
+    }
+
+    //락을 거는 조회는 샤드 이름 순서로 하나씩 실행한다 (샤드 사이의 잠금 순서를 항상 같게 한다)
+    @Override
+    public Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        return read(() -> {
+            Map<String, Member> result = new HashMap<>();
+            new TreeMap<>(groupByShard(memberIds, Function.identity()))
+                    .forEach((shardName, ids) -> result.putAll(shards.get(shardName).findAllByIdForUpdate(ids)));
+            return result;
+        });
+    }
+
+    /**
+     * 샤드를 차례로 이어서 읽는다 (커서는 한 번에 하나만 열린다). 동시에 읽으려면 forEach 를 사용한다
+     * 연 시점의 링과 샤드 목록으로 읽고 락은 잡고 있지 않는다. 다른 쓰레드에서 닫아도 된다
+     * 옮긴 회원을 원래 샤드에서 지우면 읽는 중인 Stream 에서 빠지므로 addShard() 는 열린 Stream 이 닫히기를 기다린다
+     * 닫지 않으면 addShard() 가 streamCloseTimeout 뒤에 실패하므로 반드시 try-with-resources 로 사용한다
+     */
+    @Override
+    public Stream<Member> streamAll() {
+        //읽기 락 안에서 등록해야 이미 시작한 addShard() 와 겹치지 않는다. 샤드의 커서는 Stream 을 읽을 때 열린다
+        return read(() -> {
+            HashRing current = ring;
+            List<Map.Entry<String, MemberRepository>> targets = new ArrayList<>(shards.entrySet());
+            streamOpened();
+            return targets.stream()
+                    .flatMap(shard -> shard.getValue().streamAll()
+                            .filter(member -> current.route(member.getMemberId()).equals(shard.getKey())))
+                    .onClose(this::streamClosed);
+        });
+    }
+
+    private void streamOpened() {
+        streamLock.lock();
+        try {
+            openStreams++;
+        } finally {
+            streamLock.unlock();
+        }
+    }
+
+    private void streamClosed() {
+        streamLock.lock();
+        try {
+            if (--openStreams == 0) {
+                streamsClosed.signalAll();
+            }
+        } finally {
+            streamLock.unlock();
+        }
+    }
+
+    //쓰기 락을 잡은 뒤 호출한다 - 새 Stream 은 열리지 않고 열린 것이 닫히기만 기다린다
+    private void awaitStreamsClosed() {
+        streamLock.lock();
+        try {
+            long remaining = streamCloseTimeout.toNanos();
+            while (openStreams > 0) {
+                if (remaining <= 0) {
+                    throw new IllegalStateException(openStreams + " streamAll() streams are still open after "
+                            + streamCloseTimeout + ", close them before adding a shard");
+                }
+                remaining = streamsClosed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for streamAll() streams to close", e);
+        } finally {
+            streamLock.unlock();
+        }
+    }
+
+    /**
+     * 모든 샤드를 동시에 읽는다. action 은 한 번에 하나씩 호출된다
+     */
+    @Override
+    public void forEach(Consumer<Member> action) {
+        read(() -> {
+            Object mutex = new Object();
+            Consumer<Member> synchronizedAction = member -> {
+                synchronized (mutex) {
+                    action.accept(member);
+                }
+            };
+            HashRing current = ring;
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            shards.forEach((shardName, shard) -> futures.add(CompletableFuture.runAsync(() -> shard.forEach(member -> {
+                if (current.route(member.getMemberId()).equals(shardName)) {
+                    synchronizedAction.accept(member);
+                }
+            }), executor)));
+            join(futures);
+            return null;
+        });
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        read(() -> {
+            shardFor(memberId).update(memberId, money);
+            return null;
+        });
+    }
+
+    @Override
+    public void addMoney(String memberId, int delta, boolean requireNonNegative) {
+        read(() -> {
+            shardFor(memberId).addMoney(memberId, delta, requireNonNegative);
+            return null;
+        });
+    }
+
+    //같은 샤드면 그 샤드의 이체 함수를 호출한다 (샤드마다 H2TransferFunction.register 필요)
+    @Override
+    public void transfer(String fromId, String toId, int amount) {
+        read(() -> {
+            MemberRepository fromShard = shardFor(fromId);
+            MemberRepository toShard = shardFor(toId);
+            if (fromShard == toShard) {
+                fromShard.transfer(fromId, toId, amount);
+                return null;
+            }
+            fromShard.addMoney(fromId, -amount, true);
+            try {
+                toShard.addMoney(toId, amount, false);
+            } catch (RuntimeException e) {
+                //보상 - 출금을 되돌린다
+                log.warn("cross-shard transfer failed, compensating fromId = {}", fromId, e);
+                fromShard.addMoney(fromId, amount, false);
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(String memberId) {
+        read(() -> {
+            shardFor(memberId).delete(memberId);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Member> saveAll(List<Member> members) {
+        read(() -> fanOut(groupByShard(members, Member::getMemberId), MemberRepository::saveAll));
+        return members;
+    }
+
+    @Override
+    public void updateAll(List<Member> members) {
+        read(() -> fanOut(groupByShard(members, Member::getMemberId), (shard, chunk) -> {
+            shard.updateAll(chunk);
+            return null;
+        }));
+    }
+
+    @Override
+    public void deleteAll(Collection<String> memberIds) {
+        read(() -> fanOut(groupByShard(memberIds, Function.identity()), (shard, chunk) -> {
+            shard.deleteAll(chunk);
+            return null;
+        }));
+    }
+
+    @Override
+    public List<Member> saveOrUpdateAll(List<Member> members) {
+        read(() -> fanOut(groupByShard(members, Member::getMemberId), MemberRepository::saveOrUpdateAll));
+        return members;
+    }
+
+    @Override
+    public int insertAllIfAbsent(List<Member> members) {
+        return read(() -> fanOut(groupByShard(members, Member::getMemberId), MemberRepository::insertAllIfAbsent)
+                .stream().mapToInt(Integer::intValue).sum());
+    }
+
+    /**
+     * 샤드를 추가하고 새 링에서 그 샤드로 가는 회원을 옮긴다. 옮기는 동안 다른 호출은 기다린다
+     * 열린 streamAll() Stream 이 있으면 먼저 닫히기를 기다리고, streamCloseTimeout 안에 닫히지 않으면 IllegalStateException
+     * 1. 기존 샤드마다 동시에 읽어서 batchSize 건씩 새 샤드에 saveOrUpdateAll 로 복사한다
+     *    하나라도 실패하면 새 샤드에 복사한 것을 지우고 예외를 던진다 (원래 샤드와 링은 그대로)
+     * 2. 모두 복사되면 링을 바꾼다
+     * 3. 원래 샤드에서 옮긴 회원을 지운다. 여기서 실패해도 남은 복사본은 라우팅되지 않으므로 유실은 없다
+     * @return 옮긴 회원 수
+     */
+    public long addShard(String shardName, MemberRepository shard) {
+        rebalanceLock.writeLock().lock();
+        try {
+            if (shards.containsKey(shardName)) {
+                throw new IllegalArgumentException("shard already exists: " + shardName);
+            }
+            awaitStreamsClosed();
+            HashRing newRing = ring.with(shardName);
+            Map<String, CompletableFuture<List<String>>> copies = new LinkedHashMap<>();
+            shards.forEach((sourceName, source) -> copies.put(sourceName,
+                    CompletableFuture.supplyAsync(() -> copy(source, shard, shardName, newRing), executor)));
+            try {
+                join(new ArrayList<>(copies.values()));
+            } catch (RuntimeException e) {
+                log.error("adding shard {} failed, removing copied members", shardName, e);
+                removeAll(shard);
+                throw e;
+            }
+
+            Map<String, MemberRepository> newShards = new LinkedHashMap<>(shards);
+            newShards.put(shardName, shard);
+            shards = Collections.unmodifiableMap(newShards);
+            ring = newRing;
+
+            long moved = 0;
+            for (Map.Entry<String, CompletableFuture<List<String>>> copy : copies.entrySet()) {
+                List<String> movedIds = copy.getValue().join();
+                moved += movedIds.size();
+                try {
+                    deleteInBatches(newShards.get(copy.getKey()), movedIds);
+                } catch (RuntimeException e) {
+                    log.warn("failed to delete {} moved members from shard {}, stale copies remain",
+                            movedIds.size(), copy.getKey(), e);
+                }
+            }
+            log.info("added shard {}, moved {} members", shardName, moved);
+            return moved;
+        } finally {
+            rebalanceLock.writeLock().unlock();
+        }
+    }
+
+    //새 링에서 target 으로 가는 회원을 복사하고 그 id 를 돌려준다
+    private List<String> copy(MemberRepository source, MemberRepository target, String targetName, HashRing newRing) {
+        List<Member> batch = new ArrayList<>(batchSize);
+        List<String> movedIds = new ArrayList<>();
+        source.forEach(member -> {
+            if (newRing.route(member.getMemberId()).equals(targetName)) {
+                batch.add(member);
+                movedIds.add(member.getMemberId());
+                if (batch.size() >= batchSize) {
+                    target.saveOrUpdateAll(batch);
+                    batch.clear();
+                }
+            }
+        });
+        if (!batch.isEmpty()) {
+            target.saveOrUpdateAll(batch);
+        }
+        return movedIds;
+    }
+
+    private void removeAll(MemberRepository shard) {
+        List<String> memberIds = new ArrayList<>();
+        shard.forEach(member -> memberIds.add(member.getMemberId()));
+        deleteInBatches(shard, memberIds);
+    }
+
+    private void deleteInBatches(MemberRepository shard, List<String> memberIds) {
+        for (int from = 0; from < memberIds.size(); from += batchSize) {
+            shard.deleteAll(memberIds.subList(from, Math.min(from + batchSize, memberIds.size())));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private MemberRepository shardFor(String memberId) {
+        return shards.get(ring.route(memberId));
+    }
+
+    //입력 순서를 유지하면서 샤드별로 나눈다
+    private <T> Map<String, List<T>> groupByShard(Collection<T> items, Function<T, String> memberId) {
+        HashRing current = ring;
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(current.route(memberId.apply(item)), shardName -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    //샤드가 하나뿐이면 호출한 쓰레드에서 바로 실행한다 (호출한 쪽의 트랜잭션에 참여)
+    private <T, R> List<R> fanOut(Map<String, List<T>> groups, BiFunction<MemberRepository, List<T>, R> operation) {
+        if (groups.size() == 1) {
+            Map.Entry<String, List<T>> group = groups.entrySet().iterator().next();
+            return List.of(operation.apply(shards.get(group.getKey()), group.getValue()));
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(groups.size());
+        groups.forEach((shardName, chunk) -> {
+            MemberRepository shard = shards.get(shardName);
+            futures.add(CompletableFuture.supplyAsync(() -> operation.apply(shard, chunk), executor));
+        });
+        join(futures);
+        List<R> results = new ArrayList<>(futures.size());
+        futures.forEach(future -> results.add(future.join()));
+        return results;
+    }
+
+    //모두 끝날 때까지 기다리고 실패한 것이 있으면 원래 예외를 던진다
+    private static void join(List<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T read(Supplier<T> operation) {
+        rebalanceLock.readLock().lock();
+        try {
+            return operation.get();
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 샤드 이름마다 가상 노드를 올린 해시 링. 바뀌지 않는 객체이고 샤드를 추가하면 새로 만든다
+     */
+    static class HashRing {
+
+        private final NavigableMap<Long, String> nodes = new TreeMap<>();
+
+        HashRing(Collection<String> shardNames) {
+            shardNames.forEach(this::addNodes);
+        }
+
+        private HashRing(HashRing source) {
+            nodes.putAll(source.nodes);
+        }
+
+        HashRing with(String shardName) {
+            HashRing ring = new HashRing(this);
+            ring.addNodes(shardName);
+            return ring;
+        }
+
+        private void addNodes(String shardName) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                nodes.put(hash(shardName + "#" + i), shardName);
+            }
+        }
+
+        String route(String memberId) {
+            Map.Entry<Long, String> node = nodes.ceilingEntry(hash(memberId));
+            return node != null ? node.getValue() : nodes.firstEntry().getValue();
+        }
+
+        //FNV-1a 64 비트 + 비트 섞기 (String.hashCode 는 비슷한 id 가 링의 가까운 위치에 몰린다)
+        static long hash(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+}
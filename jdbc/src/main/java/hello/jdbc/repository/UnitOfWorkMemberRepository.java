@@ -0,0 +1,339 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 트랜잭션 범위의 1차 캐시(identity map)와 쓰기 지연을 제공하는 MemberRepository 데코레이터
+ * - 트랜잭션 안에서 한 번 조회한 회원은 다시 조회해도 DB 에 가지 않고 같은 객체를 돌려준다
+ * - update() 는 바로 실행하지 않고 객체의 값만 바꾼다. 조회한 객체를 직접 바꿔도 변경으로 감지한다
+ * - 커밋 직전(beforeCommit)에 변경된 회원을 updateAll 배치 한 번으로 반영한다. 롤백되면 그냥 버린다
+ * - 그 외의 쓰기나 전체 조회 전에는 순서가 바뀌지 않도록 쌓인 변경을 먼저 반영한다
+ * 트랜잭션 밖에서는 그대로 위임한다
+ */
+@Slf4j
+public class UnitOfWorkMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+
+    public UnitOfWorkMemberRepository(MemberRepository target) {
+        this.target = target;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            return target.findById(memberId);
+        }
+        ManagedMember managed = unitOfWork.members.get(memberId);
+        if (managed == null) {
+            managed = unitOfWork.load(target.findById(memberId));
+        }
+        return managed.member;
+    }
+
+    //락은 항상 DB 에 건다. 이 트랜잭션에서 이미 변경한 회원이면 아직 flush 하지 않은 그 값이 최신이다
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        Member locked = target.findByIdForUpdate(memberId);
+        if (unitOfWork == null) {
+            return locked;
+        }
+        return unitOfWork.refresh(locked).member;
+    }
+
+    @Override
+    public int findMoneyById(String memberId) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        ManagedMember managed = unitOfWork == null ? null : unitOfWork.members.get(memberId);
+        if (managed != null) {
+            return managed.member.getMoney();
+        }
+        return target.findMoneyById(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            return target.findAllById(memberIds);
+        }
+        Map<String, Member> result = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String memberId : memberIds) {
+            ManagedMember managed = unitOfWork.members.get(memberId);
+            if (managed != null) {
+                result.put(memberId, managed.member);
+            } else {
+                misses.add(memberId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (Member member : target.findAllById(misses).values()) {
+                result.put(member.getMemberId(), unitOfWork.load(member).member);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        Map<String, Member> locked = target.findAllByIdForUpdate(memberIds);
+        if (unitOfWork == null) {
+            return locked;
+        }
+        Map<String, Member> result = new HashMap<>();
+        for (Member member : locked.values()) {
+            result.put(member.getMemberId(), unitOfWork.refresh(member).member);
+        }
+        return result;
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            target.update(memberId, money);
+            return;
+        }
+        ManagedMember managed = unitOfWork.members.get(memberId);
+        if (managed == null) {
+            //조회하지 않은 회원 - 원래 값을 모르므로 항상 변경된 것으로 본다
+            managed = new ManagedMember(new Member(memberId, money), null);
+            unitOfWork.members.put(memberId, managed);
+        }
+        managed.member.setMoney(money);
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        flush();
+        return target.streamAll();
+    }
+
+    @Override
+    public void forEach(Consumer<Member> action) {
+        flush();
+        target.forEach(action);
+    }
+
+    @Override
+    public Member save(Member member) {
+        flush();
+        Member saved = target.save(member);
+        detach(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        flush();
+        Member saved = target.saveOrUpdate(member);
+        detach(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        flush();
+        boolean created = target.insertIfAbsent(member);
+        detach(member.getMemberId());
+        return created;
+    }
+
+    @Override
+    public void addMoney(String memberId, int delta, boolean requireNonNegative) {
+        flush();
+        target.addMoney(memberId, delta, requireNonNegative);
+        detach(memberId);
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int amount) {
+        flush();
+        target.transfer(fromId, toId, amount);
+        detach(fromId);
+        detach(toId);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        flush();
+        target.delete(memberId);
+        detach(memberId);
+    }
+
+    @Override
+    public List<Member> saveAll(List<Member> members) {
+        flush();
+        List<Member> saved = target.saveAll(members);
+        members.forEach(member -> detach(member.getMemberId()));
+        return saved;
+    }
+
+    @Override
+    public void updateAll(List<Member> members) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            target.updateAll(members);
+            return;
+        }
+        for (Member member : members) {
+            update(member.getMemberId(), member.getMoney());
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> memberIds) {
+        flush();
+        target.deleteAll(memberIds);
+        memberIds.forEach(this::detach);
+    }
+
+    @Override
+    public List<Member> saveOrUpdateAll(List<Member> members) {
+        flush();
+        List<Member> saved = target.saveOrUpdateAll(members);
+        members.forEach(member -> detach(member.getMemberId()));
+        return saved;
+    }
+
+    @Override
+    public int insertAllIfAbsent(List<Member> members) {
+        flush();
+        int created = target.insertAllIfAbsent(members);
+        members.forEach(member -> detach(member.getMemberId()));
+        return created;
+    }
+
+    /**
+     * 쌓인 변경을 지금 반영한다. 트랜잭션 밖이면 아무것도 하지 않는다
+     */
+    public void flush() {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.flushPending();
+        }
+    }
+
+    //DB 에서 직접 바뀐 회원은 1차 캐시에서 제거해서 다음 조회 때 다시 읽게 한다
+    private void detach(String memberId) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.members.remove(memberId);
+        }
+    }
+
+    /**
+     * 현재 트랜잭션의 작업 단위. 트랜잭션이 없으면 null, 처음 사용할 때 트랜잭션 동기화에 등록한다
+     */
+    private UnitOfWork currentUnitOfWork() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        UnitOfWork unitOfWork = (UnitOfWork) TransactionSynchronizationManager.getResource(this);
+        if (unitOfWork == null) {
+            unitOfWork = new UnitOfWork();
+            TransactionSynchronizationManager.bindResource(this, unitOfWork);
+            TransactionSynchronizationManager.registerSynchronization(unitOfWork);
+        }
+        return unitOfWork;
+    }
+
+    private static class ManagedMember {
+
+        private final Member member;
+        private Integer originalMoney; //null 이면 원래 값을 모름
+
+        private ManagedMember(Member member, Integer originalMoney) {
+            this.member = member;
+            this.originalMoney = originalMoney;
+        }
+
+        private boolean isDirty() {
+            return originalMoney == null || originalMoney != member.getMoney();
+        }
+    }
+
+    private class UnitOfWork implements TransactionSynchronization {
+
+        private final Map<String, ManagedMember> members = new LinkedHashMap<>();
+
+        private ManagedMember load(Member member) {
+            ManagedMember managed = new ManagedMember(member, member.getMoney());
+            members.put(member.getMemberId(), managed);
+            return managed;
+        }
+
+        /**
+         * 락을 걸고 읽은 값으로 관리 중인 인스턴스를 갱신한다. 인스턴스를 바꾸지 않으므로 앞서 돌려준 참조도 같은 값을 본다
+         * 이 트랜잭션에서 변경한(dirty) 회원이면 아직 flush 하지 않은 그 값이 최신이므로 그대로 둔다
+         */
+        private ManagedMember refresh(Member locked) {
+            ManagedMember managed = members.get(locked.getMemberId());
+            if (managed == null) {
+                return load(locked);
+            }
+            if (!managed.isDirty()) {
+                managed.member.setMoney(locked.getMoney());
+                managed.originalMoney = locked.getMoney();
+            }
+            return managed;
+        }
+
+        private void flushPending() {
+            List<Member> dirty = new ArrayList<>();
+            List<ManagedMember> flushed = new ArrayList<>();
+            for (ManagedMember managed : members.values()) {
+                if (managed.isDirty()) {
+                    dirty.add(new Member(managed.member.getMemberId(), managed.member.getMoney()));
+                    flushed.add(managed);
+                }
+            }
+            if (dirty.isEmpty()) {
+                return;
+            }
+            log.debug("flush {} members", dirty.size());
+            target.updateAll(dirty);
+            for (ManagedMember managed : flushed) {
+                managed.originalMoney = managed.member.getMoney();
+            }
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(UnitOfWorkMemberRepository.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(UnitOfWorkMemberRepository.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            flushPending();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UnitOfWorkMemberRepository.this);
+            members.clear();
+        }
+    }
+
+}
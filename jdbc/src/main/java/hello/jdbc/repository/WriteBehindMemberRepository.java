@@ -0,0 +1,301 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 잔액 변경(update)을 모아서 나중에 쓰는 MemberRepository 데코레이터 (write-behind)
+ * - update() 는 메모리(ConcurrentHashMap)에만 기록한다. 같은 회원의 변경이 여러 번 오면 마지막 값 하나로 합쳐진다
+ * - 백그라운드 쓰레드가 maxDelay 마다, 또는 쌓인 건수가 maxPending 을 넘으면 updateAll 배치로 반영한다
+ * - flush() 는 호출 시점까지 쌓인 변경이 DB 에 반영될 때까지 기다린다. close() 는 마지막으로 flush 한다
+ * - 조회는 아직 반영되지 않은 값을 덮어써서 돌려준다. update 외의 쓰기는 먼저 flush 한 뒤 실행한다
+ *
+ * 백그라운드 쓰레드가 생성 중인 객체를 보지 않도록 생성자 대신 start() 로 만든다
+ *
+ * 변경이 호출한 쪽의 트랜잭션과 무관하게 나중에 반영되므로 트랜잭션 밖에서 사용하는 용도다
+ * (초당 수천 번 잔액이 바뀌는 가맹점, 정산 계좌 등)
+ */
+@Slf4j
+public class WriteBehindMemberRepository implements MemberRepository, AutoCloseable {
+
+    private final MemberRepository target;
+    private final int maxPending;
+    private final ConcurrentHashMap<String, Integer> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    private final LongAdder updateCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushFailureCount = new LongAdder();
+
+    private WriteBehindMemberRepository(MemberRepository target, int maxPending) {
+        this.target = target;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "WriteBehindMemberRepository-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 생성을 마친 뒤에 주기적인 flush 를 시작한다
+     */
+    public static WriteBehindMemberRepository start(MemberRepository target, Duration maxDelay, int maxPending) {
+        WriteBehindMemberRepository repository = new WriteBehindMemberRepository(target, maxPending);
+        long delayMs = Math.max(1, maxDelay.toMillis());
+        repository.flusher.scheduleWithFixedDelay(repository::flushQuietly, delayMs, delayMs, TimeUnit.MILLISECONDS);
+        return repository;
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        if (closed) {
+            throw new IllegalStateException("repository is closed");
+        }
+        updateCount.increment();
+        if (pending.put(memberId, money) != null) {
+            coalescedCount.increment();
+        }
+        //검사와 put 사이에 close() 가 마지막 flush 를 끝냈을 수 있다. 그러면 남은 값을 직접 반영한다
+        if (closed) {
+            flush();
+            return;
+        }
+        if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                //그 사이 close() 가 flusher 를 종료했다
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public void updateAll(List<Member> members) {
+        for (Member member : members) {
+            update(member.getMemberId(), member.getMoney());
+        }
+    }
+
+    /**
+     * 지금까지 쌓인 변경을 모두 반영한다. 다른 쓰레드가 flush 중이면 끝날 때까지 기다린 뒤 남은 것을 반영한다
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<Member> snapshot = new ArrayList<>(pending.size());
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                snapshot.add(new Member(entry.getKey(), entry.getValue()));
+            }
+            try {
+                target.updateAll(snapshot);
+            } catch (RuntimeException e) {
+                flushFailureCount.increment();
+                throw e;
+            }
+            flushCount.increment();
+            writtenCount.add(snapshot.size());
+            //반영하는 사이 새로 들어온 값은 남겨둔다
+            for (Member member : snapshot) {
+                pending.remove(member.getMemberId(), member.getMoney());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            //반영하지 못한 변경은 남아 있으므로 다음 주기에 다시 시도한다
+            log.error("write-behind flush failed, pending = {}", pending.size(), e);
+        }
+    }
+
+    /**
+     * 새 변경을 받지 않고 남은 변경을 모두 반영한 뒤 종료한다
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("write-behind closed, written = {}, coalesced = {}", writtenCount.sum(), coalescedCount.sum());
+    }
+
+    /**
+     * 스프링 컨테이너 밖에서 사용할 때 JVM 종료 시 남은 변경을 반영하도록 등록한다
+     * (빈으로 등록하면 컨테이너가 close() 를 호출한다)
+     */
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "WriteBehindMemberRepository-shutdown"));
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return overlay(target.findById(memberId));
+    }
+
+    //락을 거는 조회는 쌓인 변경을 먼저 반영한 뒤 DB 에서 읽는다
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        flush();
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public int findMoneyById(String memberId) {
+        Integer money = pending.get(memberId);
+        return money != null ? money : target.findMoneyById(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds) {
+        Map<String, Member> result = target.findAllById(memberIds);
+        result.values().forEach(this::overlay);
+        return result;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        flush();
+        return target.findAllByIdForUpdate(memberIds);
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        return target.streamAll().map(this::overlay);
+    }
+
+    @Override
+    public void forEach(Consumer<Member> action) {
+        target.forEach(member -> action.accept(overlay(member)));
+    }
+
+    private Member overlay(Member member) {
+        Integer money = pending.get(member.getMemberId());
+        if (money != null) {
+            member.setMoney(money);
+        }
+        return member;
+    }
+
+    @Override
+    public Member save(Member member) {
+        flush();
+        return target.save(member);
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        flush();
+        return target.saveOrUpdate(member);
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        flush();
+        return target.insertIfAbsent(member);
+    }
+
+    @Override
+    public void addMoney(String memberId, int delta, boolean requireNonNegative) {
+        flush();
+        target.addMoney(memberId, delta, requireNonNegative);
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int amount) {
+        flush();
+        target.transfer(fromId, toId, amount);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        flush();
+        target.delete(memberId);
+    }
+
+    @Override
+    public List<Member> saveAll(List<Member> members) {
+        flush();
+        return target.saveAll(members);
+    }
+
+    @Override
+    public void deleteAll(Collection<String> memberIds) {
+        flush();
+        target.deleteAll(memberIds);
+    }
+
+    @Override
+    public List<Member> saveOrUpdateAll(List<Member> members) {
+        flush();
+        return target.saveOrUpdateAll(members);
+    }
+
+    @Override
+    public int insertAllIfAbsent(List<Member> members) {
+        flush();
+        return target.insertAllIfAbsent(members);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getUpdateCount() {
+        return updateCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    public long getFlushFailureCount() {
+        return flushFailureCount.sum();
+    }
+
+}
@@ -0,0 +1,23 @@
+package hello.jdbc.repository.ex;
+
+/**
+ * 잔액이 음수가 되지 않도록 조건을 건 변경이 적용되지 않았을 때 발생
+ */
+public class InsufficientMoneyException extends RuntimeException {
+
+    public InsufficientMoneyException() {
+    }
+
+    public InsufficientMoneyException(String message) {
+        super(message);
+    }
+
+    public InsufficientMoneyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InsufficientMoneyException(Throwable cause) {
+        super(cause);
+    }
+
+}
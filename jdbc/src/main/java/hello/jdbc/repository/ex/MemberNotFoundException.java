@@ -0,0 +1,35 @@
+package hello.jdbc.repository.ex;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 회원이 없을 때 발생. 기존 코드가 잡던 NoSuchElementException 을 그대로 상속한다
+ * 조회 실패가 흔한 흐름(존재 여부 확인 등)에서는 writableStackTrace = false 로 스택 트레이스 수집 비용을 없앨 수 있다
+ */
+public class MemberNotFoundException extends NoSuchElementException {
+
+    private final String memberId;
+
+    public MemberNotFoundException(String memberId) {
+        this(memberId, true);
+    }
+
+    public MemberNotFoundException(String memberId, boolean writableStackTrace) {
+        super("member not found memberId = " + memberId);
+        this.memberId = memberId;
+        //Throwable 생성자가 fillInStackTrace() 를 호출하는 시점에는 필드가 아직 초기화되지 않았으므로 여기서 수집한다
+        if (writableStackTrace) {
+            super.fillInStackTrace();
+        }
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
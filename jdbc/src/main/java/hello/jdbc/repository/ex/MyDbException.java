@@ -17,4 +17,11 @@ public class MyDbException extends RuntimeException {
         super(cause);
     }
 
+    /**
+     * writableStackTrace 가 false 면 스택 트레이스를 수집하지 않는다 (예상된 실패를 값싸게 던질 때)
+     */
+    public MyDbException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
+
 }
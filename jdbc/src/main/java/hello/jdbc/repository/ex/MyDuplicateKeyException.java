@@ -17,4 +17,8 @@ public class MyDuplicateKeyException extends MyDbException {
         super(cause);
     }
 
+    public MyDuplicateKeyException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, writableStackTrace);
+    }
+
 }
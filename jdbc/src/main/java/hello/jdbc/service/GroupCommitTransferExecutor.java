@@ -0,0 +1,203 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 여러 이체를 하나의 트랜잭션으로 묶어서 커밋하는 실행기 (group commit)
+ * - submit() 은 이체를 큐에 넣고 바로 CompletableFuture 를 반환한다
+ * - 디스패처 쓰레드가 첫 이체부터 maxDelay 동안, 또는 maxBatchSize 건이 찰 때까지 모아서 한 트랜잭션으로 실행한다
+ * - 이체마다 세이브포인트를 만들어서 실패한 이체만 세이브포인트로 롤백하고 나머지는 계속 진행한다
+ * - 커밋이 끝난 뒤에 future 를 완료한다. 커밋이 실패하면 성공했던 이체의 future 도 모두 실패로 완료한다
+ *
+ * 이체 한 건은 MemberServiceV4.accountTransferDelta 와 같이 money = money + ? 로 반영한다
+ * 커밋(로그 flush) 한 번을 여러 이체가 나눠 쓰므로 처리량이 늘고, 대신 이체마다 최대 maxDelay 만큼 지연된다
+ */
+@Slf4j
+public class GroupCommitTransferExecutor implements AutoCloseable {
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate txTemplate;
+    private final long maxDelayNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder transferCount = new LongAdder();
+    private final LongAdder failedTransferCount = new LongAdder();
+    private final LongAdder commitCount = new LongAdder();
+    private final LongAdder commitFailureCount = new LongAdder();
+
+    public GroupCommitTransferExecutor(MemberRepository memberRepository, PlatformTransactionManager transactionManager,
+                                       Duration maxDelay, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.memberRepository = memberRepository;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = new Thread(this::dispatch, "GroupCommitTransferExecutor-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<Void> submit(String fromId, String toId, int money) {
+        PendingTransfer transfer = new PendingTransfer(fromId, toId, money);
+        if (closed) {
+            transfer.future.completeExceptionally(new IllegalStateException("executor is closed"));
+            return transfer.future;
+        }
+        queue.add(transfer);
+        //검사와 add 사이에 close() 가 디스패처를 끝냈을 수 있다. 아무도 꺼내가지 않았으면 직접 실패로 완료한다
+        if (closed && queue.remove(transfer)) {
+            transfer.future.completeExceptionally(new IllegalStateException("executor is closed"));
+        }
+        return transfer.future;
+    }
+
+    private void dispatch() {
+        List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                execute(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("group commit dispatcher error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        //중단된 경우 남은 이체는 실행하지 않고 실패로 완료한다
+        failRemaining();
+    }
+
+    private void failRemaining() {
+        PendingTransfer remaining;
+        while ((remaining = queue.poll()) != null) {
+            remaining.future.completeExceptionally(new IllegalStateException("executor is closed"));
+        }
+    }
+
+    private void execute(List<PendingTransfer> batch) {
+        List<PendingTransfer> applied = new ArrayList<>(batch.size());
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                for (PendingTransfer transfer : batch) {
+                    if (apply(status, transfer)) {
+                        applied.add(transfer);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            commitFailureCount.increment();
+            log.error("group commit failed, batch size = {}", batch.size(), e);
+            for (PendingTransfer transfer : batch) {
+                transfer.future.completeExceptionally(e);
+            }
+            return;
+        }
+        commitCount.increment();
+        transferCount.add(applied.size());
+        for (PendingTransfer transfer : applied) {
+            transfer.future.complete(null);
+        }
+    }
+
+    /**
+     * 세이브포인트 안에서 이체 한 건을 반영한다. 실패하면 세이브포인트로 롤백하고 future 를 실패로 완료한다
+     */
+    private boolean apply(TransactionStatus status, PendingTransfer transfer) {
+        Object savepoint = status.createSavepoint();
+        try {
+            memberRepository.addMoney(transfer.fromId, -transfer.money, true);
+            memberRepository.addMoney(transfer.toId, transfer.money);
+            status.releaseSavepoint(savepoint);
+            return true;
+        } catch (RuntimeException e) {
+            status.rollbackToSavepoint(savepoint);
+            failedTransferCount.increment();
+            transfer.future.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    /**
+     * 큐에 남은 이체를 모두 실행한 뒤 디스패처를 종료한다
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            dispatcher.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        //디스패처가 끝난 뒤에 들어온 이체
+        failRemaining();
+    }
+
+    public long getTransferCount() {
+        return transferCount.sum();
+    }
+
+    public long getFailedTransferCount() {
+        return failedTransferCount.sum();
+    }
+
+    public long getCommitCount() {
+        return commitCount.sum();
+    }
+
+    public long getCommitFailureCount() {
+        return commitFailureCount.sum();
+    }
+
+    private static class PendingTransfer {
+
+        private final String fromId;
+        private final String toId;
+        private final int money;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingTransfer(String fromId, String toId, int money) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+        }
+    }
+
+}
@@ -3,10 +3,13 @@ package hello.jdbc.service;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepository;
 import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.ex.MemberNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class MemberServiceV4 {
@@ -33,8 +36,55 @@ public class MemberServiceV4 {
         memberRepository.update(toId, toMember.getMoney() + money);
     }
 
+    /**
+     * 두 회원을 member_id 순서로 한 번에 잠근 뒤 조회한 값으로 변경한다 (select ... for update)
+     * 조회부터 커밋까지 다른 트랜잭션이 두 회원을 변경할 수 없어서 갱신이 유실되지 않고,
+     * 반대 방향 이체와도 항상 같은 순서로 잠그므로 교착 상태가 생기지 않는다
+     */
+    @Transactional
+    public void accountTransferLocking(String fromId, String toId, int money) {
+        bizLogicLocking(fromId, toId, money);
+    }
+
+    private void bizLogicLocking(String fromId, String toId, int money) {
+        Map<String, Member> locked = memberRepository.findAllByIdForUpdate(List.of(fromId, toId));
+        Member fromMember = getLocked(locked, fromId);
+        Member toMember = getLocked(locked, toId);
+
+        memberRepository.update(fromId, fromMember.getMoney() - money);
+        validate(toMember);
+        memberRepository.update(toId, toMember.getMoney() + money);
+    }
+
+    private Member getLocked(Map<String, Member> locked, String memberId) {
+        Member member = locked.get(memberId);
+        if (member == null) {
+            throw new MemberNotFoundException(memberId);
+        }
+        return member;
+    }
+
+    /**
+     * 조회 없이 잔액 증감만으로 이체 - SQL 두 번으로 끝나고 동시에 이체해도 갱신이 유실되지 않는다
+     * 잔액이 부족하면 InsufficientMoneyException 이 발생하고 롤백된다
+     */
+    @Transactional
+    public void accountTransferDelta(String fromId, String toId, int money) {
+        bizLogicDelta(fromId, toId, money);
+    }
+
+    private void bizLogicDelta(String fromId, String toId, int money) {
+        memberRepository.addMoney(fromId, -money, true);
+        validate(toId);
+        memberRepository.addMoney(toId, money);
+    }
+
     private void validate(Member toMember) {
-        if(toMember.getMemberId().equals("ex")){
+        validate(toMember.getMemberId());
+    }
+
+    private void validate(String toId) {
+        if(toId.equals("ex")){
             throw new IllegalStateException("이체 중 예외 발생");
         }
     }
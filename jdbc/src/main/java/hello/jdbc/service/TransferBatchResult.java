@@ -0,0 +1,69 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.domain.TransferCommand;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * transferAll() 한 번의 결과
+ * - 실패한 이체와 그 예외 (키는 전달한 TransferCommand 인스턴스), 배치 전체 소요 시간과 처리량
+ * - queueTime: 이체가 제출된 뒤 동시 실행 제한(세마포어)을 통과할 때까지 기다린 시간
+ * - transferTime: 이체 트랜잭션 실행 시간
+ */
+public class TransferBatchResult {
+
+    private final int transferCount;
+    private final Map<TransferCommand, RuntimeException> failures;
+    private final long elapsedNanos;
+    private final LatencyHistogram queueTime;
+    private final LatencyHistogram transferTime;
+
+    TransferBatchResult(int transferCount, Map<TransferCommand, RuntimeException> failures, long elapsedNanos,
+                        LatencyHistogram queueTime, LatencyHistogram transferTime) {
+        this.transferCount = transferCount;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedNanos = elapsedNanos;
+        this.queueTime = queueTime;
+        this.transferTime = transferTime;
+    }
+
+    public int getTransferCount() {
+        return transferCount;
+    }
+
+    public int getSucceededCount() {
+        return transferCount - failures.size();
+    }
+
+    public Map<TransferCommand, RuntimeException> getFailures() {
+        return failures;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    //초당 성공한 이체 수
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getSucceededCount() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    public LatencyHistogram getTransferTime() {
+        return transferTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("transfers=%d, succeeded=%d, failed=%d, elapsed=%dms, throughput=%.1f tx/s, queue[%s], transfer[%s]",
+                transferCount, getSucceededCount(), failures.size(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getThroughput(), queueTime, transferTime);
+    }
+
+}
@@ -0,0 +1,468 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferCommand;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CSV 이체 파일(fromId,toId,money 한 줄에 한 건)을 스트리밍으로 반영하는 가져오기 파이프라인
+ * 1. 읽기: FileChannel 로 고정 크기 버퍼만큼씩 읽고 바이트 단위로 구분자를 찾는다 (String.split, 줄 단위 String 없음)
+ * 2. 검증: batchSize 건씩 묶은 배치를 검증 쓰레드들이 병렬로 검증한다 (형식, 금액, 회원 존재 여부 - findAllById 한 번)
+ * 3. 반영: 배치 순서대로 회원별 잔액 증감을 합친 뒤 money = money + ? 배치 update 로 한 트랜잭션에 반영한다
+ *    잔액이 음수가 되는 이체는 반영하지 않는다 (accountTransferDelta 와 같은 규칙). 그런 배치는 한 건씩 다시 반영하고 해당 이체만 건너뛴다
+ *    (검사는 배치의 합친 결과 기준이라 같은 배치 안에서 나중에 들어오는 입금으로 메워지는 출금은 허용된다)
+ *    같은 트랜잭션에서 체크포인트 테이블에 반영한 파일 위치(byte offset)를 기록한다
+ * 중간에 실패하거나 프로세스가 죽으면 다시 실행했을 때 마지막으로 커밋된 위치부터 이어서 읽는다 (이미 반영한 배치는 다시 반영하지 않는다)
+ * 체크포인트에는 파일 크기와 수정 시각도 함께 기록한다. 같은 이름의 다른 파일(다음 날 파일 등)이면 이어서 읽지 않고 실패한다
+ * 새 파일을 처음부터 가져오려면 resetCheckpoint() 를 먼저 호출한다
+ * 메모리는 읽기 버퍼와 동시에 검증 중인 배치 수(검증 쓰레드 수 * 2)만큼만 사용하므로 파일 크기와 무관하다
+ *
+ * 잘못된 줄은 반영하지 않고 건너뛰며 건수와 처음 몇 건의 사유를 결과에 남긴다
+ * '#' 으로 시작하는 줄과 빈 줄은 무시한다
+ */
+@Slf4j
+public class TransferFileImporter {
+
+    static final String CHECKPOINT_TABLE = "transfer_import_checkpoint";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ID_LENGTH = 10;
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private final MemberRepository memberRepository;
+    private final JdbcTemplate template;
+    private final TransactionTemplate txTemplate;
+    private final int batchSize;
+    private final int validatorThreads;
+
+    /**
+     * memberRepository 는 dataSource 를 사용하는 리포지토리여야 한다 (검증 조회용)
+     */
+    public TransferFileImporter(MemberRepository memberRepository, DataSource dataSource, int batchSize, int validatorThreads) {
+        if (batchSize < 1 || validatorThreads < 1) {
+            throw new IllegalArgumentException("batchSize and validatorThreads must be positive");
+        }
+        this.memberRepository = memberRepository;
+        this.template = new JdbcTemplate(dataSource);
+        this.txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.batchSize = batchSize;
+        this.validatorThreads = validatorThreads;
+        template.execute("create table if not exists " + CHECKPOINT_TABLE + " (" +
+                "import_name varchar(255) primary key, committed_offset bigint not null, line_number bigint not null, " +
+                "file_size bigint not null, file_modified bigint not null)");
+    }
+
+    /**
+     * 파일 이름을 가져오기 이름(체크포인트 키)으로 사용한다
+     */
+    public TransferImportResult importFile(Path file) {
+        return importFile(file, file.getFileName().toString());
+    }
+
+    public TransferImportResult importFile(Path file, String importName) {
+        FileIdentity identity = FileIdentity.of(file);
+        Checkpoint checkpoint = loadCheckpoint(importName, identity);
+        log.info("import {} from offset={}, line={}", file, checkpoint.offset, checkpoint.lineNumber);
+
+        TransferImportResult result = new TransferImportResult(checkpoint.offset);
+        ExecutorService validators = Executors.newFixedThreadPool(validatorThreads);
+        ArrayDeque<CompletableFuture<ValidatedBatch>> inFlight = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(checkpoint.offset);
+            LineReader reader = new LineReader(channel, checkpoint.offset, checkpoint.lineNumber);
+            RawBatch batch;
+            while ((batch = reader.nextBatch(batchSize)) != null) {
+                RawBatch submitted = batch;
+                inFlight.add(CompletableFuture.supplyAsync(() -> validate(submitted), validators));
+                if (inFlight.size() >= validatorThreads * 2) {
+                    apply(importName, identity, inFlight.poll().join(), result);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                apply(importName, identity, inFlight.poll().join(), result);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            validators.shutdownNow();
+        }
+        log.info("import {} finished {}", file, result);
+        return result;
+    }
+
+    /**
+     * 검증 쓰레드에서 실행된다
+     */
+    private ValidatedBatch validate(RawBatch batch) {
+        List<RawLine> valid = new ArrayList<>(batch.lines.size());
+        List<String> rejections = new ArrayList<>();
+        Set<String> memberIds = new HashSet<>();
+        for (RawLine line : batch.lines) {
+            if (line.error == null) {
+                memberIds.add(line.command.getFromId());
+                memberIds.add(line.command.getToId());
+            }
+        }
+        Map<String, Member> members = memberIds.isEmpty() ? Map.of() : memberRepository.findAllById(memberIds);
+        for (RawLine line : batch.lines) {
+            String error = line.error;
+            if (error == null && !members.containsKey(line.command.getFromId())) {
+                error = "unknown fromId " + line.command.getFromId();
+            }
+            if (error == null && !members.containsKey(line.command.getToId())) {
+                error = "unknown toId " + line.command.getToId();
+            }
+            if (error == null) {
+                valid.add(line);
+            } else {
+                rejections.add("line " + line.lineNumber + ": " + error);
+            }
+        }
+        return new ValidatedBatch(valid, rejections, batch.endOffset, batch.endLineNumber);
+    }
+
+    /**
+     * 배치 하나를 한 트랜잭션으로 반영하고 같은 트랜잭션에서 체크포인트를 옮긴다
+     * 합친 증감으로 잔액이 음수가 되는 회원이 있으면 롤백하고 이체를 한 건씩 다시 반영하면서 잔액이 부족한 이체만 건너뛴다
+     */
+    private void apply(String importName, FileIdentity identity, ValidatedBatch batch, TransferImportResult result) {
+        //같은 회원의 증감은 하나로 합친다
+        Map<String, Integer> deltas = new HashMap<>();
+        for (RawLine line : batch.valid) {
+            deltas.merge(line.command.getFromId(), -line.command.getMoney(), Integer::sum);
+            deltas.merge(line.command.getToId(), line.command.getMoney(), Integer::sum);
+        }
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((memberId, delta) -> {
+            if (delta != 0) {
+                args.add(new Object[]{delta, memberId, delta});
+            }
+        });
+
+        boolean applied = Boolean.TRUE.equals(txTemplate.execute(status -> {
+            int[] counts = template.batchUpdate("update member set money = money + ? where member_id = ? and money + ? >= 0", args);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    if ((Integer) args.get(i)[0] > 0) {
+                        throw memberNotFound((String) args.get(i)[1]);
+                    }
+                    //출금 쪽 - 잔액 부족(또는 삭제된 회원), 한 건씩 다시 반영한다
+                    status.setRollbackOnly();
+                    return false;
+                }
+            }
+            saveCheckpoint(importName, identity, batch);
+            return true;
+        }));
+        if (applied) {
+            result.batchCommitted(batch.valid.size(), batch.rejections, batch.endOffset, MAX_REPORTED_REJECTIONS);
+            return;
+        }
+
+        List<String> rejections = new ArrayList<>(batch.rejections);
+        int appliedCount = txTemplate.execute(status -> {
+            int count = 0;
+            for (RawLine line : batch.valid) {
+                TransferCommand command = line.command;
+                int debited = template.update("update member set money = money - ? where member_id = ? and money >= ?",
+                        command.getMoney(), command.getFromId(), command.getMoney());
+                if (debited == 0) {
+                    if (!exists(command.getFromId())) {
+                        throw memberNotFound(command.getFromId());
+                    }
+                    rejections.add("line " + line.lineNumber + ": insufficient money " + command.getFromId());
+                    continue;
+                }
+                if (template.update("update member set money = money + ? where member_id = ?", command.getMoney(), command.getToId()) == 0) {
+                    throw memberNotFound(command.getToId());
+                }
+                count++;
+            }
+            saveCheckpoint(importName, identity, batch);
+            return count;
+        });
+        result.batchCommitted(appliedCount, rejections, batch.endOffset, MAX_REPORTED_REJECTIONS);
+    }
+
+    private void saveCheckpoint(String importName, FileIdentity identity, ValidatedBatch batch) {
+        template.update("merge into " + CHECKPOINT_TABLE + "(import_name, committed_offset, line_number, file_size, file_modified) " +
+                        "key(import_name) values(?, ?, ?, ?, ?)",
+                importName, batch.endOffset, batch.endLineNumber, identity.size, identity.modifiedMillis);
+    }
+
+    private boolean exists(String memberId) {
+        Integer count = template.queryForObject("select count(*) from member where member_id = ?", Integer.class, memberId);
+        return count != null && count > 0;
+    }
+
+    //검증 이후 삭제된 회원 - 배치 전체를 롤백하고 중단한다 (다시 실행하면 이 배치부터 재검증)
+    private static EmptyResultDataAccessException memberNotFound(String memberId) {
+        return new EmptyResultDataAccessException("member not found memberId = " + memberId, 1);
+    }
+
+    //다른 파일의 체크포인트로 이어서 읽으면 엉뚱한 위치부터 반영하거나 아무것도 반영하지 않고 성공한 것처럼 보인다
+    private Checkpoint loadCheckpoint(String importName, FileIdentity identity) {
+        List<Checkpoint> checkpoints = template.query(
+                "select committed_offset, line_number, file_size, file_modified from " + CHECKPOINT_TABLE + " where import_name = ?",
+                (rs, rowNum) -> new Checkpoint(rs.getLong(1), rs.getLong(2), new FileIdentity(rs.getLong(3), rs.getLong(4))),
+                importName);
+        if (checkpoints.isEmpty()) {
+            return new Checkpoint(0, 0, identity);
+        }
+        Checkpoint checkpoint = checkpoints.get(0);
+        if (!checkpoint.identity.equals(identity)) {
+            throw new IllegalStateException("checkpoint of import " + importName + " belongs to a different file (size="
+                    + checkpoint.identity.size + ", modified=" + checkpoint.identity.modifiedMillis + "), current size="
+                    + identity.size + ", modified=" + identity.modifiedMillis + " - call resetCheckpoint() to import from the start");
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 체크포인트를 지워서 다음 실행이 파일 처음부터 시작하게 한다
+     */
+    public void resetCheckpoint(String importName) {
+        template.update("delete from " + CHECKPOINT_TABLE + " where import_name = ?", importName);
+    }
+
+    /**
+     * 버퍼 안에서 바이트 단위로 줄과 필드를 찾는다. 줄이 버퍼 경계에 걸치면 남은 부분을 앞으로 옮기고 이어서 읽는다
+     */
+    private static class LineReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final byte[] bytes = buffer.array();
+        private long offset;      //다음 줄이 시작하는 파일 위치
+        private long lineNumber;  //마지막으로 읽은 줄 번호
+        private boolean eof;
+
+        private LineReader(FileChannel channel, long offset, long lineNumber) {
+            this.channel = channel;
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            buffer.flip(); //읽을 데이터 없음
+        }
+
+        private RawBatch nextBatch(int batchSize) throws IOException {
+            List<RawLine> lines = new ArrayList<>(batchSize);
+            while (lines.size() < batchSize) {
+                int end = findLineEnd();
+                if (end < 0) {
+                    if (!fill()) {
+                        if (buffer.hasRemaining()) {
+                            //마지막 줄에 줄바꿈이 없는 경우
+                            end = buffer.limit();
+                        } else {
+                            break;
+                        }
+                    } else {
+                        continue;
+                    }
+                }
+                int start = buffer.position();
+                int next = end < buffer.limit() ? end + 1 : end;
+                offset += next - start;
+                lineNumber++;
+                buffer.position(next);
+                RawLine line = parse(start, end, lineNumber);
+                if (line != null) {
+                    lines.add(line);
+                }
+            }
+            return lines.isEmpty() && eof && !buffer.hasRemaining() ? null : new RawBatch(lines, offset, lineNumber);
+        }
+
+        private int findLineEnd() {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        //남은 바이트를 앞으로 옮기고 채운다. 더 읽을 것이 없으면 false
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                throw new IllegalStateException("line longer than " + READ_BUFFER_SIZE + " bytes at line " + (lineNumber + 1));
+            }
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            return true;
+        }
+
+        private RawLine parse(int start, int end, long lineNumber) {
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            if (end == start || bytes[start] == '#') {
+                return null;
+            }
+            int firstComma = indexOf(',', start, end);
+            int secondComma = firstComma < 0 ? -1 : indexOf(',', firstComma + 1, end);
+            if (secondComma < 0) {
+                return RawLine.rejected(lineNumber, "expected fromId,toId,money");
+            }
+            int fromLength = firstComma - start;
+            int toLength = secondComma - firstComma - 1;
+            if (fromLength < 1 || fromLength > MAX_ID_LENGTH || toLength < 1 || toLength > MAX_ID_LENGTH) {
+                return RawLine.rejected(lineNumber, "member id length must be 1 ~ " + MAX_ID_LENGTH);
+            }
+            long money = parseMoney(secondComma + 1, end);
+            if (money <= 0) {
+                return RawLine.rejected(lineNumber, "money must be a positive integer");
+            }
+            String fromId = new String(bytes, start, fromLength, StandardCharsets.US_ASCII);
+            String toId = new String(bytes, firstComma + 1, toLength, StandardCharsets.US_ASCII);
+            if (fromId.equals(toId)) {
+                return RawLine.rejected(lineNumber, "fromId and toId are the same");
+            }
+            return new RawLine(lineNumber, new TransferCommand(fromId, toId, (int) money), null);
+        }
+
+        private int indexOf(char c, int from, int end) {
+            for (int i = from; i < end; i++) {
+                if (bytes[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        //숫자가 아니거나 int 범위를 넘으면 -1
+        private long parseMoney(int from, int end) {
+            if (from >= end) {
+                return -1;
+            }
+            long value = 0;
+            for (int i = from; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE) {
+                    return -1;
+                }
+            }
+            return value;
+        }
+    }
+
+    private static class RawLine {
+        private final long lineNumber;
+        private final TransferCommand command;
+        private final String error;
+
+        private RawLine(long lineNumber, TransferCommand command, String error) {
+            this.lineNumber = lineNumber;
+            this.command = command;
+            this.error = error;
+        }
+
+        private static RawLine rejected(long lineNumber, String error) {
+            return new RawLine(lineNumber, null, error);
+        }
+    }
+
+    private static class RawBatch {
+        private final List<RawLine> lines;
+        private final long endOffset;
+        private final long endLineNumber;
+
+        private RawBatch(List<RawLine> lines, long endOffset, long endLineNumber) {
+            this.lines = lines;
+            this.endOffset = endOffset;
+            this.endLineNumber = endLineNumber;
+        }
+    }
+
+    private static class ValidatedBatch {
+        private final List<RawLine> valid;
+        private final List<String> rejections;
+        private final long endOffset;
+        private final long endLineNumber;
+
+        private ValidatedBatch(List<RawLine> valid, List<String> rejections, long endOffset, long endLineNumber) {
+            this.valid = valid;
+            this.rejections = rejections;
+            this.endOffset = endOffset;
+            this.endLineNumber = endLineNumber;
+        }
+    }
+
+    private static class Checkpoint {
+        private final long offset;
+        private final long lineNumber;
+        private final FileIdentity identity;
+
+        private Checkpoint(long offset, long lineNumber, FileIdentity identity) {
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            this.identity = identity;
+        }
+    }
+
+    //파일 크기 + 마지막 수정 시각
+    private static class FileIdentity {
+        private final long size;
+        private final long modifiedMillis;
+
+        private FileIdentity(long size, long modifiedMillis) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        private static FileIdentity of(Path file) {
+            try {
+                return new FileIdentity(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileIdentity other && size == other.size && modifiedMillis == other.modifiedMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(modifiedMillis);
+        }
+    }
+
+}
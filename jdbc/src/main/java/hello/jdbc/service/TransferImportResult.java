@@ -0,0 +1,70 @@
+package hello.jdbc.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TransferFileImporter.importFile() 한 번의 결과
+ * - 이번 실행에서 반영한 이체 수, 건너뛴 줄 수와 처음 몇 건의 사유
+ * - 커밋한 트랜잭션(배치) 수, 시작/마지막으로 커밋한 파일 위치
+ */
+public class TransferImportResult {
+
+    private final long startOffset;
+    private long committedOffset;
+    private long appliedCount;
+    private long rejectedCount;
+    private int committedBatches;
+    private final List<String> rejections = new ArrayList<>();
+
+    TransferImportResult(long startOffset) {
+        this.startOffset = startOffset;
+        this.committedOffset = startOffset;
+    }
+
+    void batchCommitted(int applied, List<String> batchRejections, long endOffset, int maxReportedRejections) {
+        appliedCount += applied;
+        rejectedCount += batchRejections.size();
+        committedBatches++;
+        committedOffset = endOffset;
+        for (String rejection : batchRejections) {
+            if (rejections.size() >= maxReportedRejections) {
+                break;
+            }
+            rejections.add(rejection);
+        }
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public int getCommittedBatches() {
+        return committedBatches;
+    }
+
+    //처음 몇 건만 보관한다 (전체 건수는 getRejectedCount)
+    public List<String> getRejections() {
+        return Collections.unmodifiableList(rejections);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("applied=%d, rejected=%d, batches=%d, offset=%d->%d",
+                appliedCount, rejectedCount, committedBatches, startOffset, committedOffset);
+    }
+
+}
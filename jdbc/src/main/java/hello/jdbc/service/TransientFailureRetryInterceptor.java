@@ -0,0 +1,159 @@
+package hello.jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 일시적인 실패로 끝난 트랜잭션을 처음부터 다시 실행하는 인터셉터
+ * - 재시도 대상은 스프링 예외 변환기가 만든 TransientDataAccessException 계열
+ *   (DeadlockLoserDataAccessException, CannotAcquireLockException, QueryTimeoutException 등)
+ * - 트랜잭션 프록시보다 바깥에 두어야 한다. 재시도할 때마다 새 트랜잭션이 시작된다
+ *   이미 진행 중인 트랜잭션에 참여한 호출은 일부만 다시 실행할 수 없으므로 재시도하지 않고 그대로 던진다
+ * - 대기 시간은 지수 백오프에 전체 지터를 적용한다 (0 ~ min(maxBackoff, initialBackoff * 2^n) 사이 임의 값)
+ * - 전체 재시도 예산(token bucket)을 둔다. 첫 시도가 성공할 때마다 budgetRatio 만큼 토큰이 쌓이고 재시도마다 1개를 쓴다
+ *   경합이 심해져서 예산이 바닥나면 재시도하지 않고 바로 실패시켜서 재시도가 부하를 키우는 것을 막는다
+ * <pre>
+ * ProxyFactory proxyFactory = new ProxyFactory(memberService);
+ * proxyFactory.addAdvice(new TransientFailureRetryInterceptor());
+ * proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+ * </pre>
+ */
+@Slf4j
+public class TransientFailureRetryInterceptor implements MethodInterceptor {
+
+    private static final long TOKEN_SCALE = 1000;
+
+    private int maxAttempts = 5;
+    private long initialBackoffMs = 5;
+    private long maxBackoffMs = 200;
+    private double budgetRatio = 0.1;
+    private long maxBudget = 100;
+
+    private final AtomicLong budget = new AtomicLong(maxBudget * TOKEN_SCALE); //1/1000 토큰 단위
+    private final Map<Class<?>, LongAdder> retryCounts = new ConcurrentHashMap<>();
+    private final LongAdder exhaustedCount = new LongAdder();
+    private final LongAdder budgetRejectedCount = new LongAdder();
+
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setInitialBackoffMs(long initialBackoffMs) {
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    public void setMaxBackoffMs(long maxBackoffMs) {
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public void setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+    }
+
+    public void setMaxBudget(long maxBudget) {
+        this.maxBudget = maxBudget;
+        this.budget.set(maxBudget * TOKEN_SCALE);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = invocableCopy(invocation).proceed();
+                if (attempt == 1) {
+                    deposit();
+                }
+                return result;
+            } catch (TransientDataAccessException e) {
+                retryCounts.computeIfAbsent(e.getClass(), type -> new LongAdder()).increment();
+                if (attempt >= maxAttempts) {
+                    exhaustedCount.increment();
+                    throw e;
+                }
+                if (!withdraw()) {
+                    budgetRejectedCount.increment();
+                    throw e;
+                }
+                long backoffMs = backoffMs(attempt);
+                log.debug("retry {} attempt={} backoff={}ms cause={}",
+                        invocation.getMethod().getName(), attempt, backoffMs, e.getClass().getSimpleName());
+                TimeUnit.MILLISECONDS.sleep(backoffMs);
+            }
+        }
+    }
+
+    private long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 30));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private void deposit() {
+        long max = maxBudget * TOKEN_SCALE;
+        long amount = (long) (budgetRatio * TOKEN_SCALE);
+        budget.accumulateAndGet(amount, (current, add) -> Math.min(max, current + add));
+    }
+
+    private boolean withdraw() {
+        while (true) {
+            long current = budget.get();
+            if (current < TOKEN_SCALE) {
+                return false;
+            }
+            if (budget.compareAndSet(current, current - TOKEN_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * proceed() 는 인터셉터 체인의 위치를 옮기므로 같은 MethodInvocation 으로 두 번 호출할 수 없다
+     * 시도할 때마다 아직 진행하지 않은 원본의 복사본으로 다음 인터셉터(트랜잭션)부터 다시 실행한다
+     */
+    //같은 invocation 으로 proceed() 를 두 번 호출하면 인터셉터 체인을 처음부터 다시 실행하지 못한다
+    private static MethodInvocation invocableCopy(MethodInvocation invocation) {
+        if (invocation instanceof ProxyMethodInvocation proxyInvocation) {
+            return proxyInvocation.invocableClone();
+        }
+        throw new IllegalStateException("retry requires a ProxyMethodInvocation (spring AOP proxy): " + invocation);
+    }
+
+    /**
+     * 예외 타입별 재시도 발생 횟수 (마지막에 포기한 실패 포함)
+     */
+    public Map<Class<?>, Long> getRetryCounts() {
+        Map<Class<?>, Long> counts = new ConcurrentHashMap<>();
+        retryCounts.forEach((type, count) -> counts.put(type, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.sum();
+    }
+
+    public long getBudgetRejectedCount() {
+        return budgetRejectedCount.sum();
+    }
+
+    public double getRemainingBudget() {
+        return budget.get() / (double) TOKEN_SCALE;
+    }
+
+}
@@ -0,0 +1,113 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.domain.TransferCommand;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 이체마다 가상 쓰레드 하나를 사용하는 일괄 이체 실행기
+ * - 이체는 MemberServiceV4.accountTransferLocking 으로 실행한다. 동시에 실행되는 이체끼리 갱신이 유실되지 않는다
+ * - 동시 실행 수는 커넥션 풀 크기의 세마포어로 제한한다. 수천 개의 가상 쓰레드가 풀의 커넥션을 기다리며 쌓이지 않고
+ *   세마포어 앞에서 기다린다 (풀 획득 타임아웃 대신 큐잉 시간으로 나타난다)
+ *
+ * 캐리어 쓰레드 고정(pinning) 방지
+ * - 대기는 Semaphore(AQS) 로만 한다. synchronized 블록 안에서 블로킹하지 않는다
+ * - HikariCP 의 커넥션 대기와 스프링 트랜잭션 동기화(ThreadLocal)는 synchronized 를 사용하지 않는다
+ * - JDBC 드라이버 내부의 synchronized I/O 는 고칠 수 없지만 세마포어 덕분에 동시에 드라이버 안에 있는 가상 쓰레드는
+ *   풀 크기 이하라서, 고정되는 캐리어 쓰레드도 풀 크기를 넘지 않는다
+ *   (-Djdk.tracePinnedThreads=short 로 확인할 수 있다)
+ */
+@Slf4j
+public class VirtualThreadTransferExecutor {
+
+    private final MemberServiceV4 memberService;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    public VirtualThreadTransferExecutor(MemberServiceV4 memberService, DataSource dataSource) {
+        this(memberService, poolSizeOf(dataSource));
+    }
+
+    public VirtualThreadTransferExecutor(MemberServiceV4 memberService, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.memberService = memberService;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * 모든 이체가 끝날 때까지 기다린다. 실패한 이체는 예외를 던지지 않고 결과에 담는다
+     */
+    public TransferBatchResult transferAll(List<TransferCommand> commands) {
+        //같은 내용의 이체가 여러 건일 수 있으므로 인스턴스 기준으로 담는다
+        Map<TransferCommand, RuntimeException> failures = Collections.synchronizedMap(new IdentityHashMap<>());
+        LatencyHistogram queueTime = new LatencyHistogram();
+        LatencyHistogram transferTime = new LatencyHistogram();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (TransferCommand command : commands) {
+                long submitted = System.nanoTime();
+                executor.execute(() -> transfer(command, submitted, failures, queueTime, transferTime));
+            }
+        } //close() 는 제출한 작업이 모두 끝날 때까지 기다린다
+        long elapsed = System.nanoTime() - start;
+
+        TransferBatchResult result = new TransferBatchResult(commands.size(), failures, elapsed, queueTime, transferTime);
+        log.info("transferAll maxConcurrency={} {}", maxConcurrency, result);
+        return result;
+    }
+
+    private void transfer(TransferCommand command, long submitted, Map<TransferCommand, RuntimeException> failures,
+                          LatencyHistogram queueTime, LatencyHistogram transferTime) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.put(command, new IllegalStateException("interrupted while waiting for a permit", e));
+            return;
+        }
+        long acquired = System.nanoTime();
+        queueTime.record(acquired - submitted);
+        try {
+            memberService.accountTransferLocking(command.getFromId(), command.getToId(), command.getMoney());
+        } catch (RuntimeException e) {
+            failures.put(command, e);
+        } finally {
+            permits.release();
+            transferTime.record(System.nanoTime() - acquired);
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 커넥션 풀의 최대 크기. HikariCP 만 지원한다
+     */
+    static int poolSizeOf(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        throw new IllegalArgumentException("pool size is unknown, pass maxConcurrency explicitly: " + dataSource);
+    }
+
+}
@@ -0,0 +1,148 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SmartDataSource;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+
+/**
+ * 트랜잭션 커넥션을 ThreadLocal 대신 ScopedValue 로 전달하는 DataSource (Java 21 preview, --enable-preview 필요)
+ * - inTransaction() 은 커넥션 하나를 수동 커밋 모드로 열고 콜백이 실행되는 동안에만 ScopedValue 에 바인딩한다
+ *   콜백이 정상 종료하면 커밋, 예외가 나면 rollbackOn 이 true 일 때 롤백한다
+ * - 바인딩된 동안 getConnection() 은 같은 커넥션을 돌려준다. 리포지토리 코드(DataSourceUtils, JdbcTemplate)는 그대로 사용한다
+ * - SmartDataSource.shouldClose() 가 false 를 돌려주므로 DataSourceUtils.releaseConnection() 은 바인딩된 커넥션을 닫지 않는다
+ *   (커넥션을 직접 close() 하지 말고 DataSourceUtils 로 반환해야 한다)
+ *
+ * 트랜잭션 커넥션 바인딩 자체는 ThreadLocal 을 쓰지 않고 콜백 범위가 끝나면 사라진다 (스프링 트랜잭션 동기화를 등록하지 않는다)
+ * 단, 리포지토리가 거치는 DataSourceUtils.getConnection() 은 여전히 TransactionSynchronizationManager 를 조회하므로
+ * (ThreadLocal get) 가상 쓰레드마다 ThreadLocal 맵은 만들어진다. 줄어드는 것은 트랜잭션 동기화 등록/해제와 리소스 바인딩 비용이다
+ */
+@Slf4j
+public class ScopedConnectionDataSource extends DelegatingDataSource implements SmartDataSource {
+
+    private final ScopedValue<Connection> boundConnection = ScopedValue.newInstance();
+
+    public ScopedConnectionDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (boundConnection.isBound()) {
+            return boundConnection.get();
+        }
+        return obtainTargetDataSource().getConnection();
+    }
+
+    @Override
+    public boolean shouldClose(Connection con) {
+        return !boundConnection.isBound() || boundConnection.get() != con;
+    }
+
+    public boolean isTransactionActive() {
+        return boundConnection.isBound();
+    }
+
+    /**
+     * definition 의 전파 속성에 따라 트랜잭션 안에서 callback 을 실행한다
+     * REQUIRED / SUPPORTS / MANDATORY 는 바인딩된 트랜잭션이 있으면 참여하고, REQUIRES_NEW 는 항상 새 커넥션을 연다
+     * 참여한 경우 롤백 여부는 바깥 트랜잭션이 결정한다 (예외는 그대로 전파)
+     */
+    public <T> T inTransaction(TransactionDefinition definition, Callable<T> callback, RollbackRule rollbackOn) throws Exception {
+        switch (definition.getPropagationBehavior()) {
+            case TransactionDefinition.PROPAGATION_REQUIRED:
+                return isTransactionActive() ? callback.call() : newTransaction(definition, callback, rollbackOn);
+            case TransactionDefinition.PROPAGATION_REQUIRES_NEW:
+                return newTransaction(definition, callback, rollbackOn);
+            case TransactionDefinition.PROPAGATION_SUPPORTS:
+                return callback.call();
+            case TransactionDefinition.PROPAGATION_MANDATORY:
+                if (!isTransactionActive()) {
+                    throw new IllegalStateException("no existing transaction for propagation 'mandatory'");
+                }
+                return callback.call();
+            default:
+                throw new IllegalStateException("unsupported propagation: " + definition.getPropagationBehavior());
+        }
+    }
+
+    private <T> T newTransaction(TransactionDefinition definition, Callable<T> callback, RollbackRule rollbackOn) throws Exception {
+        Connection con = obtainTargetDataSource().getConnection();
+        int previousIsolation = -1;
+        try {
+            con.setAutoCommit(false);
+            if (definition.isReadOnly()) {
+                con.setReadOnly(true);
+            }
+            if (definition.getIsolationLevel() != TransactionDefinition.ISOLATION_DEFAULT) {
+                previousIsolation = con.getTransactionIsolation();
+                con.setTransactionIsolation(definition.getIsolationLevel());
+            }
+
+            T result;
+            try {
+                result = ScopedValue.where(boundConnection, con).call(callback);
+            } catch (Throwable e) {
+                if (rollbackOn.rollbackOn(e)) {
+                    rollbackQuietly(con, e);
+                } else {
+                    commitQuietly(con, e);
+                }
+                throw e;
+            }
+            con.commit();
+            return result;
+        } finally {
+            release(con, definition.isReadOnly(), previousIsolation);
+        }
+    }
+
+    //롤백하지 않는 예외 - 커밋은 하되 커밋 실패가 원래 예외를 가리지 않게 한다
+    private static void commitQuietly(Connection con, Throwable cause) {
+        try {
+            con.commit();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void rollbackQuietly(Connection con, Throwable cause) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    //풀에 돌려주기 전에 기본값으로 되돌린다
+    private static void release(Connection con, boolean readOnly, int previousIsolation) {
+        try {
+            if (previousIsolation != -1) {
+                con.setTransactionIsolation(previousIsolation);
+            }
+            if (readOnly) {
+                con.setReadOnly(false);
+            }
+            con.setAutoCommit(true);
+        } catch (SQLException e) {
+            log.info("error", e);
+        } finally {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                log.info("error", e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface RollbackRule {
+        boolean rollbackOn(Throwable ex);
+    }
+
+}
@@ -0,0 +1,62 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ScopedConnectionDataSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+
+/**
+ * @Transactional 메서드를 ScopedConnectionDataSource 의 트랜잭션으로 실행하는 인터셉터
+ * TransactionInterceptor + DataSourceTransactionManager 대신 사용한다. 트랜잭션 속성(전파, 읽기 전용, 격리 수준, 롤백 규칙)은
+ * 같은 AnnotationTransactionAttributeSource 로 읽으므로 MemberServiceV4 같은 서비스 코드를 바꾸지 않아도 된다
+ * 리포지토리는 같은 ScopedConnectionDataSource 를 사용해야 한다
+ * <pre>
+ * ScopedConnectionDataSource dataSource = new ScopedConnectionDataSource(hikariDataSource);
+ * ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(new MemberRepositoryV5(dataSource)));
+ * proxyFactory.addAdvice(new ScopedTransactionInterceptor(dataSource));
+ * </pre>
+ */
+public class ScopedTransactionInterceptor implements MethodInterceptor {
+
+    private final ScopedConnectionDataSource dataSource;
+    private final TransactionAttributeSource attributeSource = new AnnotationTransactionAttributeSource();
+
+    public ScopedTransactionInterceptor(ScopedConnectionDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : null;
+        TransactionAttribute attribute = attributeSource.getTransactionAttribute(invocation.getMethod(), targetClass);
+        if (attribute == null) {
+            return invocation.proceed();
+        }
+        try {
+            return dataSource.inTransaction(attribute, () -> {
+                try {
+                    return invocation.proceed();
+                } catch (Exception | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new ThrowableHolder(e);
+                }
+            }, attribute::rollbackOn);
+        } catch (ThrowableHolder holder) {
+            throw holder.getCause();
+        }
+    }
+
+    /**
+     * Callable 은 Throwable 을 던질 수 없으므로 Exception/Error 가 아닌 Throwable 만 감싸서 넘긴다
+     */
+    private static class ThrowableHolder extends RuntimeException {
+        private ThrowableHolder(Throwable cause) {
+            super(null, cause, false, false);
+        }
+    }
+
+}
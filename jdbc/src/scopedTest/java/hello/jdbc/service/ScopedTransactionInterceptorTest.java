@@ -0,0 +1,71 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ScopedConnectionDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScopedTransactionInterceptorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_EX = "ex";
+
+    ScopedConnectionDataSource dataSource = new ScopedConnectionDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+    MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+
+    @AfterEach
+    void after() {
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_EX));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"V4_2", "V5"})
+    void commitAndRollback(String version) {
+        MemberServiceV4 memberService = proxy(version);
+        memberRepository.saveAll(List.of(new Member(MEMBER_A, 10000), new Member(MEMBER_EX, 10000)));
+
+        //validate 에서 예외 - from 변경이 롤백된다
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(10000);
+        assertThat(memberRepository.findMoneyById(MEMBER_EX)).isEqualTo(10000);
+        assertThat(dataSource.isTransactionActive()).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"V4_2", "V5"})
+    void commitOnVirtualThread(String version) throws Exception {
+        MemberServiceV4 memberService = proxy(version);
+        memberRepository.saveAll(List.of(new Member(MEMBER_A, 10000), new Member("memberB", 10000)));
+        try {
+            Thread thread = Thread.ofVirtual().start(() -> memberService.accountTransfer(MEMBER_A, "memberB", 2000));
+            thread.join();
+
+            assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(8000);
+            assertThat(memberRepository.findMoneyById("memberB")).isEqualTo(12000);
+        } finally {
+            memberRepository.delete("memberB");
+        }
+    }
+
+    private MemberServiceV4 proxy(String version) {
+        MemberRepository repository = version.equals("V4_2") ? new MemberRepositoryV4_2(dataSource) : new MemberRepositoryV5(dataSource);
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(repository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new ScopedTransactionInterceptor(dataSource));
+        return (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+}
@@ -1,19 +1,45 @@
 package hello.jdbc.connection;
 
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @Slf4j
 class DBConnectionUtilTest {
 
+    @AfterEach
+    void after() {
+        DBConnectionUtil.disablePooling();
+    }
+
     @Test
     void connection(){
         Connection connection = DBConnectionUtil.getConnection();
         assertThat(connection).isNotNull();
     }
 
+    @Test
+    void pooledConnection() throws SQLException {
+        SimpleConnectionPool pool = new SimpleConnectionPool(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD, 2);
+        DBConnectionUtil.enablePooling(pool);
+
+        Connection con1 = DBConnectionUtil.getConnection();
+        con1.close();
+        assertThat(con1.isClosed()).isTrue();
+
+        //반환된 물리 커넥션을 재사용하므로 새 커넥션을 만들지 않는다
+        Connection con2 = DBConnectionUtil.getConnection();
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+        assertThat(pool.getActiveConnections()).isEqualTo(1);
+        con2.close();
+
+        assertThat(DBConnectionUtil.getAcquireHistogram().getCount()).isEqualTo(2);
+        log.info("acquire = {}", DBConnectionUtil.getAcquireHistogram());
+    }
+
 }
@@ -0,0 +1,57 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class InstrumentedDataSourceTest {
+
+    @Test
+    void borrowAndExhaustion() throws Exception {
+        HikariDataSource hikariDataSource = new HikariDataSource();
+        hikariDataSource.setJdbcUrl(URL);
+        hikariDataSource.setUsername(USERNAME);
+        hikariDataSource.setPassword(PASSWORD);
+        hikariDataSource.setMaximumPoolSize(2);
+        hikariDataSource.setConnectionTimeout(250);
+
+        try (hikariDataSource) {
+            InstrumentedDataSource dataSource = new InstrumentedDataSource(hikariDataSource);
+            ObjectName objectName = dataSource.registerMBean("test");
+
+            Connection con1 = dataSource.getConnection();
+            Connection con2 = dataSource.getConnection();
+            assertThat(dataSource.getActiveBorrowers()).isEqualTo(2);
+
+            //풀 크기를 넘어서면 타임아웃 후 고갈 이벤트로 기록된다
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            assertThat(dataSource.getExhaustionCount()).isEqualTo(1);
+
+            con1.close();
+            con2.close();
+            con2.close(); //두 번 닫아도 한 번만 기록
+
+            assertThat(dataSource.getActiveBorrowers()).isZero();
+            assertThat(dataSource.getPeakBorrowers()).isEqualTo(2);
+            assertThat(dataSource.getHoldHistogram().getCount()).isEqualTo(2);
+            log.info("acquire = {}", dataSource.getAcquireHistogram());
+            log.info("hold = {}", dataSource.getHoldHistogram());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(objectName, "ExhaustionCount")).isEqualTo(1L);
+            server.unregisterMBean(objectName);
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package hello.jdbc.connection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMax()).isEqualTo(1_000_000L);
+        //버킷 정밀도(약 6%) 안에서 맞으면 된다
+        assertThat((double) histogram.getPercentile(50)).isCloseTo(500_000, within(500_000 * 0.07));
+        assertThat((double) histogram.getPercentile(99)).isCloseTo(990_000, within(990_000 * 0.07));
+    }
+
+    @Test
+    void bucketBoundary() {
+        for (long value : new long[]{0, 1, 15, 16, 31, 32, 33, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueOf(index)).isGreaterThanOrEqualTo(value);
+        }
+    }
+
+}
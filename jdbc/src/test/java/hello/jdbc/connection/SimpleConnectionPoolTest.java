@@ -0,0 +1,111 @@
+package hello.jdbc.connection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimpleConnectionPoolTest {
+
+    SimpleConnectionPool pool;
+
+    @AfterEach
+    void after() {
+        pool.close();
+    }
+
+    @Test
+    void contendedBorrow() throws Exception {
+        pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 2);
+        pool.setConnectionTimeoutMs(10_000);
+
+        //풀 크기보다 많은 쓰레드가 빌리고 반환하기를 반복해도 커넥션을 더 만들지 않고 모두 받는다
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 50; j++) {
+                    try (Connection con = pool.getConnection()) {
+                        assertThat(pool.getTotalConnections()).isLessThanOrEqualTo(2);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(pool.getTimeoutCount()).isZero();
+        assertThat(pool.getActiveConnections()).isZero();
+        assertThat(pool.getWaitingThreads()).isZero();
+        assertThat(pool.getAcquireHistogram().getCount()).isEqualTo(400);
+    }
+
+    @Test
+    void timeout() throws SQLException {
+        pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 1);
+        pool.setConnectionTimeoutMs(200);
+
+        try (Connection held = pool.getConnection()) {
+            assertThatThrownBy(() -> pool.getConnection())
+                    .isInstanceOf(SQLTransientConnectionException.class);
+            assertThat(pool.getTimeoutCount()).isEqualTo(1);
+            assertThat(pool.getWaitingThreads()).isZero();
+        }
+
+        //반환된 뒤에는 바로 빌릴 수 있다
+        try (Connection con = pool.getConnection()) {
+            assertThat(pool.getTotalConnections()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void idleEviction() throws Exception {
+        pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 2);
+        pool.setIdleTimeoutMs(100);
+
+        pool.getConnection().close();
+        assertThat(pool.getIdleConnections()).isEqualTo(1);
+
+        //하우스키핑 쓰레드는 1초마다 실행된다
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.getTotalConnections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(pool.getTotalConnections()).isZero();
+        assertThat(pool.getIdleConnections()).isZero();
+    }
+
+    @Test
+    void resetConnectionState() throws SQLException {
+        pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 1);
+
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false);
+            con.setReadOnly(true);
+            con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        }
+
+        //같은 물리 커넥션을 다시 받아도 이전 사용자가 바꾼 설정은 남아 있지 않다
+        try (Connection con = pool.getConnection()) {
+            assertThat(con.getAutoCommit()).isTrue();
+            assertThat(con.isReadOnly()).isFalse();
+            assertThat(con.getTransactionIsolation()).isEqualTo(Connection.TRANSACTION_READ_COMMITTED);
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class StatementCachingDataSourceTest {
+
+    StatementCachingDataSource cachingDataSource;
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+        cachingDataSource = new StatementCachingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), 2);
+        dataSource = new HikariDataSource();
+        dataSource.setDataSource(cachingDataSource);
+        dataSource.setMaximumPoolSize(1);
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void reuseStatement() throws SQLException {
+        String sql = "select * from member where member_id = ?";
+        try (Connection con = cachingDataSource.getConnection()) {
+            PreparedStatement pstmt1 = con.prepareStatement(sql);
+            pstmt1.close();
+            PreparedStatement pstmt2 = con.prepareStatement(sql);
+            assertThat(pstmt2).isSameAs(pstmt1);
+            assertThat(pstmt2.getConnection()).isSameAs(con);
+
+            //사용 중인 SQL 을 다시 준비하면 캐시되지 않은 별도의 statement 를 받는다
+            PreparedStatement pstmt3 = con.prepareStatement(sql);
+            assertThat(pstmt3).isNotSameAs(pstmt2);
+            pstmt3.close();
+            pstmt2.close();
+        }
+        assertThat(cachingDataSource.getHitCount()).isEqualTo(1);
+        assertThat(cachingDataSource.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void resetStatementState() throws SQLException {
+        String sql = "select * from member";
+        try (Connection con = cachingDataSource.getConnection()) {
+            PreparedStatement pstmt1 = con.prepareStatement(sql);
+            int fetchSize = pstmt1.getFetchSize();
+            pstmt1.setFetchSize(500);
+            pstmt1.setMaxRows(1);
+            pstmt1.setQueryTimeout(3);
+            ResultSet rs = pstmt1.executeQuery();
+            pstmt1.close();
+            assertThat(rs.isClosed()).isTrue();
+
+            //이전 사용자가 바꾼 설정은 다음 사용자에게 남지 않는다
+            PreparedStatement pstmt2 = con.prepareStatement(sql);
+            assertThat(pstmt2).isSameAs(pstmt1);
+            assertThat(pstmt2.getFetchSize()).isEqualTo(fetchSize);
+            assertThat(pstmt2.getMaxRows()).isZero();
+            assertThat(pstmt2.getQueryTimeout()).isZero();
+            pstmt2.close();
+        }
+    }
+
+    @Test
+    void repositoryThroughPool() {
+        //releaseConnection 으로 풀에 반환해도 물리 커넥션의 캐시는 유지된다
+        MemberRepositoryV4_1 repository = new MemberRepositoryV4_1(dataSource);
+        Member member = new Member("stmtCache", 10000);
+        repository.save(member);
+        repository.findById(member.getMemberId());
+        repository.update(member.getMemberId(), 20000);
+        repository.findById(member.getMemberId());
+        repository.delete(member.getMemberId());
+
+        log.info("hit = {}, miss = {}, eviction = {}", cachingDataSource.getHitCount(),
+                cachingDataSource.getMissCount(), cachingDataSource.getEvictionCount());
+        assertThat(cachingDataSource.getHitCount()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,70 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class CachingMemberRepositoryTest {
+
+    public static final String MEMBER_A = "cacheA";
+
+    CachingMemberRepository repository;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void before() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new CachingMemberRepository(new MemberRepositoryV5(dataSource), 1024 * 1024, Duration.ofMinutes(1));
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository.save(new Member(MEMBER_A, 10000));
+    }
+
+    @AfterEach
+    void after() {
+        repository.delete(MEMBER_A);
+    }
+
+    @Test
+    void readThroughAndInvalidate() {
+        repository.findById(MEMBER_A);
+        repository.findById(MEMBER_A);
+        assertThat(repository.getStats().hitCount()).isEqualTo(1);
+
+        //캐시된 객체를 바꿔도 캐시에는 영향이 없다
+        repository.findById(MEMBER_A).setMoney(0);
+
+        repository.update(MEMBER_A, 20000);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+        log.info("hitRate = {}, stats = {}", repository.getHitRate(), repository.getStats());
+    }
+
+    @Test
+    void uncommittedWriteDoesNotLeak() {
+        repository.findById(MEMBER_A); //캐시 적재
+
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 5000);
+            //같은 트랜잭션에서는 변경한 값이 보인다
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(5000);
+            //다른 쓰레드에는 커밋 전 값이 보이지 않는다
+            int otherThreadMoney = CompletableFuture.supplyAsync(() -> repository.findById(MEMBER_A).getMoney()).join();
+            assertThat(otherThreadMoney).isEqualTo(10000);
+        });
+
+        //커밋 후 다시 무효화되어 새 값이 보인다
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(5000);
+    }
+
+}
@@ -0,0 +1,29 @@
+package hello.jdbc.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InListUtilsTest {
+
+    @Test
+    void chunk() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ids.add("id" + i);
+        }
+        ids.add("id0");
+
+        List<List<String>> chunks = InListUtils.chunk(ids);
+
+        //300 건 -> 256 + 44(64 로 채움)
+        assertThat(chunks).extracting(List::size).containsExactly(256, 64);
+        assertThat(chunks.get(1)).endsWith("id299", "id299");
+        assertThat(InListUtils.sql("select * from member where member_id in ", 4))
+                .isEqualTo("select * from member where member_id in (?, ?, ?, ?)");
+    }
+
+}
@@ -0,0 +1,210 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ex.InsufficientMoneyException;
+import hello.jdbc.repository.ex.MemberNotFoundException;
+import hello.jdbc.repository.ex.MyDbException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MemberRepository 구현체 공통 테스트
+ */
+@Slf4j
+class MemberRepositoryTest {
+
+    static final int BATCH_SIZE = 3;
+    static final DataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    static Stream<MemberRepository> repositories() {
+        return Stream.of(
+                new MemberRepositoryV4_1(dataSource, BATCH_SIZE),
+                new MemberRepositoryV4_2(dataSource, BATCH_SIZE),
+                new MemberRepositoryV5(dataSource, BATCH_SIZE));
+    }
+
+    List<String> memberIds = new ArrayList<>();
+
+    @AfterEach
+    void after() {
+        new MemberRepositoryV5(dataSource).deleteAll(memberIds);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void batch(MemberRepository repository) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Member member = new Member("batch" + i, 1000);
+            members.add(member);
+            memberIds.add(member.getMemberId());
+        }
+
+        repository.saveAll(members);
+        assertThat(repository.findById("batch6").getMoney()).isEqualTo(1000);
+
+        members.forEach(member -> member.setMoney(2000));
+        repository.updateAll(members);
+        assertThat(repository.findById("batch0").getMoney()).isEqualTo(2000);
+
+        repository.deleteAll(memberIds);
+        assertThatThrownBy(() -> repository.findById("batch3"))
+                .isInstanceOfAny(NoSuchElementException.class, DataAccessException.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void batchDuplicateKey(MemberRepository repository) {
+        memberIds.add("batchDup");
+        List<Member> members = List.of(new Member("batchDup", 0), new Member("batchDup", 0));
+
+        assertThatThrownBy(() -> repository.saveAll(members))
+                .isInstanceOfAny(MyDbException.class, DataAccessException.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void findAllById(MemberRepository repository) {
+        List<Member> members = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Member member = new Member("bulk" + i, i);
+            members.add(member);
+            memberIds.add(member.getMemberId());
+            ids.add(member.getMemberId());
+        }
+        repository.saveAll(members);
+        ids.add("bulk0"); //중복 id
+        ids.add("bulkNone"); //없는 id
+
+        Map<String, Member> found = repository.findAllById(ids);
+
+        assertThat(found).hasSize(300);
+        assertThat(found.get("bulk299").getMoney()).isEqualTo(299);
+        assertThat(found).doesNotContainKey("bulkNone");
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void streamAll(MemberRepository repository) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Member member = new Member("stream" + i, 100);
+            members.add(member);
+            memberIds.add(member.getMemberId());
+        }
+        repository.saveAll(members);
+
+        try (Stream<Member> stream = repository.streamAll()) {
+            long total = stream.filter(member -> member.getMemberId().startsWith("stream"))
+                    .mapToLong(Member::getMoney)
+                    .sum();
+            assertThat(total).isEqualTo(1000);
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        repository.forEach(member -> {
+            if (member.getMemberId().startsWith("stream")) {
+                count.incrementAndGet();
+            }
+        });
+        assertThat(count).hasValue(10);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void addMoney(MemberRepository repository) {
+        memberIds.add("delta");
+        repository.save(new Member("delta", 1000));
+
+        repository.addMoney("delta", 500);
+        repository.addMoney("delta", -1500, true);
+        assertThat(repository.findById("delta").getMoney()).isZero();
+
+        assertThatThrownBy(() -> repository.addMoney("delta", -1, true))
+                .isInstanceOf(InsufficientMoneyException.class);
+        assertThatThrownBy(() -> repository.addMoney("deltaNone", 1))
+                .isInstanceOf(MemberNotFoundException.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void transfer(MemberRepository repository) {
+        H2TransferFunction.register(dataSource);
+        memberIds.add("fnA");
+        memberIds.add("fnB");
+        repository.saveAll(List.of(new Member("fnA", 1000), new Member("fnB", 0)));
+
+        repository.transfer("fnA", "fnB", 600);
+        assertThat(repository.findById("fnA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("fnB").getMoney()).isEqualTo(600);
+
+        //잔액 부족, 받는/보내는 회원 없음 - 어느 쪽 잔액도 바뀌지 않는다
+        assertThatThrownBy(() -> repository.transfer("fnA", "fnB", 600))
+                .isInstanceOf(InsufficientMoneyException.class);
+        assertThatThrownBy(() -> repository.transfer("fnA", "fnNone", 100))
+                .isInstanceOfSatisfying(MemberNotFoundException.class, e -> assertThat(e.getMemberId()).isEqualTo("fnNone"));
+        assertThatThrownBy(() -> repository.transfer("fnNone2", "fnB", 100))
+                .isInstanceOfSatisfying(MemberNotFoundException.class, e -> assertThat(e.getMemberId()).isEqualTo("fnNone2"));
+        assertThat(repository.findById("fnA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("fnB").getMoney()).isEqualTo(600);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void upsert(MemberRepository repository) {
+        memberIds.addAll(List.of("upsertA", "upsertB", "upsertC"));
+
+        assertThat(repository.insertIfAbsent(new Member("upsertA", 1000))).isTrue();
+        assertThat(repository.insertIfAbsent(new Member("upsertA", 2000))).isFalse();
+        assertThat(repository.findById("upsertA").getMoney()).isEqualTo(1000);
+
+        //컬럼보다 긴 id 는 잘려서 저장되지 않고 실패한다
+        memberIds.add("upsertLong");
+        assertThatThrownBy(() -> repository.insertIfAbsent(new Member("upsertLong01", 1000)))
+                .isInstanceOf(RuntimeException.class);
+        assertThat(repository.findAllById(List.of("upsertLong"))).isEmpty();
+
+        repository.saveOrUpdate(new Member("upsertA", 3000));
+        repository.saveOrUpdate(new Member("upsertB", 3000));
+        assertThat(repository.findById("upsertA").getMoney()).isEqualTo(3000);
+        assertThat(repository.findById("upsertB").getMoney()).isEqualTo(3000);
+
+        int created = repository.insertAllIfAbsent(List.of(
+                new Member("upsertA", 0), new Member("upsertB", 0), new Member("upsertC", 0)));
+        assertThat(created).isEqualTo(1);
+
+        repository.saveOrUpdateAll(List.of(new Member("upsertA", 1), new Member("upsertC", 1)));
+        assertThat(repository.findAllById(List.of("upsertA", "upsertB", "upsertC")))
+                .extractingFromEntries(entry -> entry.getValue().getMoney())
+                .containsExactlyInAnyOrder(1, 3000, 1);
+    }
+
+    @ParameterizedTest
+    @MethodSource("repositories")
+    void findMoneyById(MemberRepository repository) {
+        memberIds.add("money");
+        repository.save(new Member("money", 700));
+
+        assertThat(repository.findMoneyById("money")).isEqualTo(700);
+        assertThatThrownBy(() -> repository.findMoneyById("moneyNone"))
+                .isInstanceOfAny(NoSuchElementException.class, DataAccessException.class);
+    }
+
+}
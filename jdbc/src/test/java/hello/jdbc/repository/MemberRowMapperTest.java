@@ -0,0 +1,48 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberRowMapperTest {
+
+    JdbcTemplate template = new JdbcTemplate(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+
+    @BeforeEach
+    void before() {
+        template.update("insert into member(member_id, money) values(?, ?)", "mapperA", 1234);
+    }
+
+    @AfterEach
+    void after() {
+        template.update("delete from member where member_id = ?", "mapperA");
+    }
+
+    @Test
+    void columnPosition() {
+        Member member = template.queryForObject(
+                "select " + MemberRowMapper.COLUMNS + " from member where member_id = ?",
+                MemberRowMapper.INSTANCE, "mapperA");
+        assertThat(member).isEqualTo(new Member("mapperA", 1234));
+    }
+
+    @Test
+    void resolveFromMetaData() {
+        //컬럼 순서가 다른 SQL 은 statement 마다 위치를 한 번만 찾는다
+        List<Member> members = template.query("select money, member_id from member where member_id = ?", rs -> {
+            MemberRowMapper mapper = MemberRowMapper.forResultSet(rs);
+            assertThat(mapper).isNotSameAs(MemberRowMapper.INSTANCE);
+            return rs.next() ? List.of(mapper.mapRow(rs, 0)) : List.of();
+        }, "mapperA");
+        assertThat(members).containsExactly(new Member("mapperA", 1234));
+    }
+
+}
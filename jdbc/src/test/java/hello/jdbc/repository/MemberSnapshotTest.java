@@ -0,0 +1,89 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    MemberRepository repository = new MemberRepositoryV5(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+    MemberSnapshot snapshot = new MemberSnapshot(repository, 2);
+
+    List<Member> members = List.of(
+            new Member("snapA", 0),
+            new Member("snapB", 127),
+            new Member("snapC", -300),
+            new Member("snap한글", Integer.MAX_VALUE),
+            new Member("snapE", Integer.MIN_VALUE));
+
+    @BeforeEach
+    void before() {
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        repository.deleteAll(members.stream().map(Member::getMemberId).toList());
+    }
+
+    @Test
+    void exportAndRead() {
+        Path file = tempDir.resolve("member.snapshot");
+
+        long exported = snapshot.export(file);
+
+        List<Member> read = new ArrayList<>();
+        assertThat(MemberSnapshot.read(file, read::add)).isEqualTo(exported);
+        assertThat(read).containsAll(members);
+    }
+
+    @Test
+    void restore() {
+        Path file = tempDir.resolve("member.snapshot");
+        snapshot.export(file);
+        List<Member> exported = new ArrayList<>();
+        MemberSnapshot.read(file, exported::add);
+
+        //테이블을 비운 뒤 스냅샷에서 다시 불러온다
+        repository.deleteAll(exported.stream().map(Member::getMemberId).toList());
+        long restored = snapshot.restore(file);
+
+        assertThat(restored).isEqualTo(exported.size());
+        try (Stream<Member> all = repository.streamAll()) {
+            assertThat(all.collect(Collectors.toList())).containsExactlyInAnyOrderElementsOf(exported);
+        }
+    }
+
+    @Test
+    void rejectNegativeIdLength() throws IOException {
+        Path file = tempDir.resolve("corrupted.snapshot");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.putInt(0x4D534E50).putInt(1).putLong(1);
+        //id 길이 자리에 -1 로 읽히는 varint
+        buffer.put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        Files.write(file, buffer.array());
+
+        assertThatThrownBy(() -> MemberSnapshot.read(file, member -> {
+        })).isInstanceOf(IllegalStateException.class).hasMessageStartingWith("corrupted snapshot");
+    }
+
+}
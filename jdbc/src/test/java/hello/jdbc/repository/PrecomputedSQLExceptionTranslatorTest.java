@@ -0,0 +1,59 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.repository.ex.MemberNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrecomputedSQLExceptionTranslatorTest {
+
+    DataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    @Test
+    void sameTypesAsSpringTranslator() {
+        SQLErrorCodeSQLExceptionTranslator spring = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        PrecomputedSQLExceptionTranslator precomputed = new PrecomputedSQLExceptionTranslator(dataSource);
+
+        //23505 키 중복, 42122 컬럼 없음, 50200 락 타임아웃, 40001 교착 상태, 99999 알 수 없는 코드
+        for (int errorCode : new int[]{23505, 42122, 50200, 40001, 99999}) {
+            SQLException e = new SQLException("error " + errorCode, "HY000", errorCode);
+            DataAccessException expected = spring.translate("task", "sql", e);
+            DataAccessException actual = precomputed.translate("task", "sql", e);
+            //알 수 없는 코드는 둘 다 null (JdbcTemplate 이 UncategorizedSQLException 으로 감싼다)
+            assertThat(actual == null ? null : actual.getClass()).isEqualTo(expected == null ? null : expected.getClass());
+            if (actual != null) {
+                assertThat(actual.getCause()).isSameAs(e);
+            }
+        }
+    }
+
+    @Test
+    void stacklessDuplicateKey() {
+        PrecomputedSQLExceptionTranslator translator = new PrecomputedSQLExceptionTranslator(dataSource, true);
+
+        DataAccessException translated = translator.translate("save", "sql", new SQLException("dup", "23505", 23505));
+
+        assertThat(translated).isInstanceOf(DuplicateKeyException.class);
+        assertThat(translated.getStackTrace()).isEmpty();
+    }
+
+    @Test
+    void stacklessMemberNotFound() {
+        NoSuchElementException withStack = new MemberNotFoundException("memberA");
+        NoSuchElementException stackless = new MemberNotFoundException("memberA", false);
+
+        assertThat(withStack.getStackTrace()).isNotEmpty();
+        assertThat(stackless.getStackTrace()).isEmpty();
+        assertThat(stackless).hasMessage("member not found memberId = memberA");
+    }
+
+}
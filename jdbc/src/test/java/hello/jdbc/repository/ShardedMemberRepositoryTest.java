@@ -0,0 +1,165 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedMemberRepositoryTest {
+
+    //샤드마다 다른 메모리 DB 를 쓴다
+    static MemberRepository shard(int shard) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:shard" + shard + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table if not exists member (member_id varchar(10) primary key, money integer not null default 0)");
+        template.execute("delete from member");
+        H2TransferFunction.register(dataSource);
+        return new MemberRepositoryV5(dataSource);
+    }
+
+    ShardedMemberRepository repository;
+    List<Member> members = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        Map<String, MemberRepository> shards = new LinkedHashMap<>();
+        shards.put("shard0", shard(0));
+        shards.put("shard1", shard(1));
+        shards.put("shard2", shard(2));
+        repository = new ShardedMemberRepository(shards, 50);
+        for (int i = 0; i < 1000; i++) {
+            members.add(new Member("m" + i, i));
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        repository.close();
+    }
+
+    @Test
+    void routing() {
+        //각 회원은 자기 샤드에만 있고 샤드마다 골고루 나뉜다
+        for (Map.Entry<String, MemberRepository> shard : repository.getShards().entrySet()) {
+            AtomicInteger count = new AtomicInteger();
+            shard.getValue().forEach(member -> {
+                assertThat(repository.shardOf(member.getMemberId())).isEqualTo(shard.getKey());
+                count.incrementAndGet();
+            });
+            assertThat(count.get()).isBetween(200, 466);
+        }
+        assertThat(repository.findById("m10")).isEqualTo(new Member("m10", 10));
+        assertThat(repository.findAllById(List.of("m1", "m2", "m3", "none"))).containsOnlyKeys("m1", "m2", "m3");
+
+        AtomicInteger scanned = new AtomicInteger();
+        repository.forEach(member -> scanned.incrementAndGet());
+        assertThat(scanned.get()).isEqualTo(1000);
+    }
+
+    @Test
+    void crossShardTransfer() {
+        String fromId = "m500";
+        String toId = idOnShard(id -> !repository.shardOf(id).equals(repository.shardOf(fromId)));
+        String missingId = missingIdOnShard(repository.shardOf(toId));
+        int toMoney = repository.findMoneyById(toId);
+
+        repository.transfer(fromId, toId, 100);
+        assertThat(repository.findMoneyById(fromId)).isEqualTo(400);
+        assertThat(repository.findMoneyById(toId)).isEqualTo(toMoney + 100);
+
+        //입금할 회원이 없으면 출금을 되돌린다
+        assertThatThrownBy(() -> repository.transfer(fromId, missingId, 100))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(repository.findMoneyById(fromId)).isEqualTo(400);
+    }
+
+    @Test
+    void sameShardTransfer() {
+        String fromId = "m500";
+        String toId = idOnShard(id -> !id.equals(fromId) && repository.shardOf(id).equals(repository.shardOf(fromId)));
+        String missingId = missingIdOnShard(repository.shardOf(fromId));
+        int toMoney = repository.findMoneyById(toId);
+
+        repository.transfer(fromId, toId, 100);
+        assertThat(repository.findMoneyById(fromId)).isEqualTo(400);
+        assertThat(repository.findMoneyById(toId)).isEqualTo(toMoney + 100);
+
+        assertThatThrownBy(() -> repository.transfer(fromId, missingId, 100))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(repository.findMoneyById(fromId)).isEqualTo(400);
+    }
+
+    private String idOnShard(Predicate<String> condition) {
+        return members.stream().map(Member::getMemberId).filter(condition).findFirst().orElseThrow();
+    }
+
+    private String missingIdOnShard(String shardName) {
+        for (int i = 0; ; i++) {
+            if (repository.shardOf("none" + i).equals(shardName)) {
+                return "none" + i;
+            }
+        }
+    }
+
+    @Test
+    void addShard() {
+        long moved = repository.addShard("shard3", shard(3));
+
+        //새 샤드로 약 1/4 이 옮겨지고 나머지는 그대로다
+        assertThat(moved).isBetween(100L, 400L);
+        AtomicInteger count = new AtomicInteger();
+        repository.getShards().get("shard3").forEach(member -> count.incrementAndGet());
+        assertThat(count.get()).isEqualTo((int) moved);
+        assertThat(repository.findAllById(members.stream().map(Member::getMemberId).toList())).hasSize(1000);
+        for (Member member : members) {
+            assertThat(repository.findById(member.getMemberId())).isEqualTo(member);
+        }
+        try (Stream<Member> all = repository.streamAll()) {
+            assertThat(all.map(Member::getMemberId).toList()).hasSize(1000).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    void addShardWaitsForOpenStreams() throws Exception {
+        repository.setStreamCloseTimeout(Duration.ofMillis(200));
+        Stream<Member> open = repository.streamAll();
+
+        //닫지 않은 Stream 이 있으면 기다리다가 실패하고 아무것도 옮기지 않는다
+        assertThatThrownBy(() -> repository.addShard("shard3", shard(3)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(repository.getShards()).doesNotContainKey("shard3");
+
+        //다른 쓰레드에서 닫아도 된다
+        repository.setStreamCloseTimeout(Duration.ofSeconds(10));
+        Thread closer = new Thread(() -> {
+            assertThat(open.count()).isEqualTo(1000);
+            open.close();
+        });
+        closer.start();
+        long moved = repository.addShard("shard3", shard(3));
+        closer.join();
+
+        assertThat(moved).isPositive();
+        try (Stream<Member> all = repository.streamAll()) {
+            assertThat(all.map(Member::getMemberId).toList()).hasSize(1000).doesNotHaveDuplicates();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UnitOfWorkMemberRepositoryTest {
+
+    public static final String MEMBER_A = "uowA";
+    public static final String MEMBER_B = "uowB";
+
+    MemberRepository directRepository;
+    UnitOfWorkMemberRepository repository;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void before() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        directRepository = new MemberRepositoryV5(dataSource);
+        repository = new UnitOfWorkMemberRepository(directRepository);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        directRepository.saveAll(List.of(new Member(MEMBER_A, 10000), new Member(MEMBER_B, 10000)));
+    }
+
+    @AfterEach
+    void after() {
+        directRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+    }
+
+    @Test
+    void flushOnCommit() {
+        txTemplate.executeWithoutResult(status -> {
+            Member memberA = repository.findById(MEMBER_A);
+            assertThat(repository.findById(MEMBER_A)).isSameAs(memberA);
+
+            repository.update(MEMBER_A, memberA.getMoney() - 2000);
+            repository.findById(MEMBER_B).setMoney(12000); //조회한 객체를 직접 변경해도 반영된다
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+
+            //커밋 전까지는 같은 트랜잭션의 커넥션으로 조회해도 DB 에는 반영되어 있지 않다
+            assertThat(directRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        });
+
+        assertThat(directRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(directRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void refreshInPlaceOnLock() {
+        txTemplate.executeWithoutResult(status -> {
+            Member memberA = repository.findById(MEMBER_A);
+            //identity map 을 거치지 않고 바뀐 값
+            directRepository.update(MEMBER_A, 9000);
+
+            //락을 걸고 읽으면 같은 인스턴스가 최신 값으로 바뀐다
+            assertThat(repository.findByIdForUpdate(MEMBER_A)).isSameAs(memberA);
+            assertThat(memberA.getMoney()).isEqualTo(9000);
+            assertThat(repository.findAllByIdForUpdate(List.of(MEMBER_A)).get(MEMBER_A)).isSameAs(memberA);
+
+            //이 트랜잭션에서 변경한 값은 락 조회로 덮어쓰지 않는다
+            memberA.setMoney(5000);
+            assertThat(repository.findByIdForUpdate(MEMBER_A).getMoney()).isEqualTo(5000);
+        });
+
+        assertThat(directRepository.findById(MEMBER_A).getMoney()).isEqualTo(5000);
+    }
+
+    @Test
+    void discardOnRollback() {
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 0);
+            status.setRollbackOnly();
+        });
+
+        assertThat(directRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+}
@@ -0,0 +1,84 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindMemberRepositoryTest {
+
+    public static final String MERCHANT = "merchant";
+
+    MemberRepository directRepository;
+    WriteBehindMemberRepository repository;
+
+    @BeforeEach
+    void before() {
+        directRepository = new MemberRepositoryV5(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+        repository = WriteBehindMemberRepository.start(directRepository, Duration.ofMinutes(1), 10_000);
+        directRepository.save(new Member(MERCHANT, 0));
+    }
+
+    @AfterEach
+    void after() {
+        repository.close();
+        directRepository.delete(MERCHANT);
+    }
+
+    @Test
+    void coalesceAndFlush() {
+        for (int money = 1; money <= 1000; money++) {
+            repository.update(MERCHANT, money);
+        }
+
+        //아직 DB 에는 반영되지 않았지만 조회는 마지막 값을 돌려준다
+        assertThat(directRepository.findById(MERCHANT).getMoney()).isZero();
+        assertThat(repository.findById(MERCHANT).getMoney()).isEqualTo(1000);
+        assertThat(repository.getCoalescedCount()).isEqualTo(999);
+
+        repository.flush();
+
+        assertThat(directRepository.findById(MERCHANT).getMoney()).isEqualTo(1000);
+        assertThat(repository.getPendingCount()).isZero();
+        assertThat(repository.getWrittenCount()).isEqualTo(1);
+    }
+
+    @Test
+    void flushOnClose() {
+        repository.update(MERCHANT, 500);
+        repository.close();
+
+        assertThat(directRepository.findById(MERCHANT).getMoney()).isEqualTo(500);
+    }
+
+    @Test
+    void updateRacingClose() throws Exception {
+        AtomicInteger lastAccepted = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            for (int money = 1; ; money++) {
+                try {
+                    repository.update(MERCHANT, money);
+                } catch (IllegalStateException e) {
+                    return;
+                }
+                lastAccepted.set(money);
+            }
+        });
+        writer.start();
+        Thread.sleep(50);
+
+        repository.close();
+        writer.join();
+
+        //close() 전후로 받아들인 마지막 변경까지 반영되어야 한다
+        assertThat(directRepository.findById(MERCHANT).getMoney()).isEqualTo(lastAccepted.get());
+    }
+
+}
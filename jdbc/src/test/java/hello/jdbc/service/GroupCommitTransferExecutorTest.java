@@ -0,0 +1,98 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.ex.InsufficientMoneyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitTransferExecutorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    MemberRepository memberRepository;
+    GroupCommitTransferExecutor executor;
+
+    @BeforeEach
+    void before() {
+        DataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        //한 배치로 모이도록 지연을 넉넉히 준다
+        executor = new GroupCommitTransferExecutor(memberRepository, new DataSourceTransactionManager(dataSource),
+                Duration.ofMillis(500), 3);
+        memberRepository.saveAll(List.of(new Member(MEMBER_A, 10000), new Member(MEMBER_B, 0)));
+    }
+
+    @AfterEach
+    void after() {
+        executor.close();
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+    }
+
+    @Test
+    void groupCommit() throws Exception {
+        CompletableFuture<Void> first = executor.submit(MEMBER_A, MEMBER_B, 1000);
+        CompletableFuture<Void> insufficient = executor.submit(MEMBER_B, MEMBER_A, 5000);
+        CompletableFuture<Void> second = executor.submit(MEMBER_A, MEMBER_B, 2000);
+
+        CompletableFuture.allOf(first, second).get();
+        assertThatThrownBy(insufficient::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InsufficientMoneyException.class);
+
+        //실패한 이체만 세이브포인트로 롤백되고 나머지 두 건은 한 번에 커밋된다
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(7000);
+        assertThat(memberRepository.findMoneyById(MEMBER_B)).isEqualTo(3000);
+        assertThat(executor.getCommitCount()).isEqualTo(1);
+        assertThat(executor.getTransferCount()).isEqualTo(2);
+        assertThat(executor.getFailedTransferCount()).isEqualTo(1);
+    }
+
+    @Test
+    void submitAfterClose() {
+        executor.close();
+
+        assertThatThrownBy(() -> executor.submit(MEMBER_A, MEMBER_B, 1000).get())
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void submitRacingClose() throws Exception {
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                futures.add(executor.submit(MEMBER_A, MEMBER_B, 1));
+            }
+        });
+        submitter.start();
+        Thread.sleep(10);
+
+        executor.close();
+        submitter.join();
+
+        //close() 와 겹친 submit 도 실행되거나 실패로 완료되어야 한다 (남아서 영원히 기다리는 future 가 없다)
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .exceptionally(e -> null)
+                .get(10, TimeUnit.SECONDS);
+        int completed = (int) futures.stream().filter(f -> !f.isCompletedExceptionally()).count();
+        assertThat(memberRepository.findMoneyById(MEMBER_B)).isEqualTo(completed);
+    }
+
+}
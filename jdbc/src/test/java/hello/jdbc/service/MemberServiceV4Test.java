@@ -2,6 +2,7 @@ package hello.jdbc.service;
 
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.*;
+import hello.jdbc.repository.ex.InsufficientMoneyException;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,6 +16,10 @@ import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static hello.jdbc.connection.ConnectionConst.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -109,4 +114,89 @@ class MemberServiceV4Test {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("잔액 증감으로 정상 이체")
+    void accountTransferDelta() {
+
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+
+        memberService.accountTransferDelta(memberA.getMemberId(), memberB.getMemberId(), 2000);
+
+        assertThat(memberRepository.findById(memberA.getMemberId()).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(memberB.getMemberId()).getMoney()).isEqualTo(12000);
+
+    }
+
+    @Test
+    @DisplayName("잔액 증감 이체 중 잔액 부족")
+    void accountTransferDeltaInsufficient() {
+
+        Member memberA = new Member(MEMBER_A, 1000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+
+        assertThatThrownBy(() -> memberService.accountTransferDelta(
+                memberA.getMemberId(), memberB.getMemberId(), 2000))
+                .isInstanceOf(InsufficientMoneyException.class);
+
+        assertThat(memberRepository.findById(memberA.getMemberId()).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(memberB.getMemberId()).getMoney()).isEqualTo(10000);
+
+    }
+
+    @Test
+    @DisplayName("잔액 증감 이체 중 예외 발생")
+    void accountTransferDeltaEx() {
+
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberEX = new Member(MEMBER_EX, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberEX);
+
+        assertThatThrownBy(() -> memberService.accountTransferDelta(
+                memberA.getMemberId(), memberEX.getMemberId(), 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(memberA.getMemberId()).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(memberEX.getMemberId()).getMoney()).isEqualTo(10000);
+
+    }
+
+    @Test
+    @DisplayName("락 이체 - 반대 방향 동시 이체")
+    void accountTransferLockingConcurrent() throws Exception {
+
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+
+        //두 회원을 항상 같은 순서로 잠그므로 반대 방향으로 동시에 이체해도 교착 상태나 갱신 유실이 없다
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> aToB = executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    memberService.accountTransferLocking(MEMBER_A, MEMBER_B, 100);
+                }
+            });
+            Future<?> bToA = executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    memberService.accountTransferLocking(MEMBER_B, MEMBER_A, 100);
+                }
+            });
+            aToB.get(30, TimeUnit.SECONDS);
+            bToA.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(memberRepository.findById(memberA.getMemberId()).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(memberB.getMemberId()).getMoney()).isEqualTo(10000);
+
+    }
+
+}
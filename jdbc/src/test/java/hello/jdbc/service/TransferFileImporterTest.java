@@ -0,0 +1,139 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransferFileImporterTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String IMPORT_NAME = "transfer-import-test";
+
+    @TempDir
+    Path tempDir;
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    TransferFileImporter importer;
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        importer = new TransferFileImporter(memberRepository, dataSource, 3, 2);
+        importer.resetCheckpoint(IMPORT_NAME);
+        memberRepository.saveAll(List.of(new Member(MEMBER_A, 10000), new Member(MEMBER_B, 10000)));
+    }
+
+    @AfterEach
+    void after() {
+        importer.resetCheckpoint(IMPORT_NAME);
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+        dataSource.close();
+    }
+
+    @Test
+    void importFile() throws IOException {
+        Path file = write(
+                "# fromId,toId,money",
+                "memberA,memberB,1000",
+                "memberB,memberA,300\r",
+                "memberA,memberNone,10",
+                "memberA,memberB,-5",
+                "memberA,memberA,10",
+                "memberA,memberB",
+                "",
+                "memberA,memberB,200"); //마지막 줄은 줄바꿈 없음
+
+        TransferImportResult result = importer.importFile(file, IMPORT_NAME);
+
+        assertThat(result.getAppliedCount()).isEqualTo(3);
+        assertThat(result.getRejectedCount()).isEqualTo(4);
+        assertThat(result.getRejections()).anyMatch(rejection -> rejection.startsWith("line 4: unknown toId"));
+        assertThat(result.getCommittedOffset()).isEqualTo(Files.size(file));
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(10000 - 1000 + 300 - 200);
+        assertThat(memberRepository.findMoneyById(MEMBER_B)).isEqualTo(10000 + 1000 - 300 + 200);
+
+        //다시 실행해도 이미 커밋한 위치 이후만 읽으므로 중복 반영되지 않는다
+        TransferImportResult again = importer.importFile(file, IMPORT_NAME);
+        assertThat(again.getAppliedCount()).isZero();
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(9100);
+    }
+
+    @Test
+    void rejectOverdraft() throws IOException {
+        //memberA 의 잔액 10000 을 넘는 이체는 건너뛰고 나머지는 반영한다
+        Path file = write("memberA,memberB,6000", "memberA,memberB,6000", "memberB,memberA,100");
+
+        TransferImportResult result = importer.importFile(file, IMPORT_NAME);
+
+        assertThat(result.getAppliedCount()).isEqualTo(2);
+        assertThat(result.getRejections()).containsExactly("line 2: insufficient money memberA");
+        assertThat(result.getCommittedOffset()).isEqualTo(Files.size(file));
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(10000 - 6000 + 100);
+        assertThat(memberRepository.findMoneyById(MEMBER_B)).isEqualTo(10000 + 6000 - 100);
+    }
+
+    @Test
+    void resumeFromCheckpoint() throws IOException {
+        String first = "memberA,memberB,1000\n";
+        Path file = write("memberA,memberB,1000", "memberA,memberB,500", "memberA,memberB,100\n");
+
+        //첫 줄까지 커밋하고 죽은 상황
+        new JdbcTemplate(dataSource).update("insert into " + TransferFileImporter.CHECKPOINT_TABLE
+                        + "(import_name, committed_offset, line_number, file_size, file_modified) values(?, ?, ?, ?, ?)",
+                IMPORT_NAME, first.length(), 1, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+
+        TransferImportResult result = importer.importFile(file, IMPORT_NAME);
+
+        assertThat(result.getStartOffset()).isEqualTo(first.length());
+        assertThat(result.getAppliedCount()).isEqualTo(2);
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(10000 - 500 - 100);
+    }
+
+    @Test
+    void rejectCheckpointOfDifferentFile() throws IOException {
+        Path file = write("memberA,memberB,1000");
+        importer.importFile(file, IMPORT_NAME);
+
+        //같은 이름으로 다음 파일이 들어온 상황
+        write("memberA,memberB,500", "memberA,memberB,500");
+
+        assertThatThrownBy(() -> importer.importFile(file, IMPORT_NAME))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(10000 - 1000);
+
+        importer.resetCheckpoint(IMPORT_NAME);
+        TransferImportResult result = importer.importFile(file, IMPORT_NAME);
+        assertThat(result.getAppliedCount()).isEqualTo(2);
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(10000 - 1000 - 1000);
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path file = tempDir.resolve("transfers.csv");
+        Files.writeString(file, String.join("\n", lines), StandardCharsets.US_ASCII);
+        return file;
+    }
+
+}
@@ -0,0 +1,174 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransientFailureRetryInterceptorTest {
+
+    TransientFailureRetryInterceptor interceptor = new TransientFailureRetryInterceptor();
+
+    @Test
+    void retryUntilSuccess() {
+        FlakyService service = proxy(new FlakyService(2));
+
+        assertThat(service.call()).isEqualTo(3);
+        assertThat(interceptor.getRetryCounts()).containsEntry(CannotAcquireLockException.class, 2L);
+    }
+
+    @Test
+    void giveUpAfterMaxAttempts() {
+        interceptor.setMaxAttempts(3);
+        FlakyService target = new FlakyService(10);
+        FlakyService service = proxy(target);
+
+        assertThatThrownBy(service::call).isInstanceOf(CannotAcquireLockException.class);
+        assertThat(target.calls).isEqualTo(3);
+        assertThat(interceptor.getExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void budgetExhausted() {
+        //예산이 1번 재시도 분량뿐이면 두 번째 재시도는 바로 실패한다
+        interceptor.setMaxBudget(1);
+        FlakyService target = new FlakyService(10);
+        FlakyService service = proxy(target);
+
+        assertThatThrownBy(service::call).isInstanceOf(CannotAcquireLockException.class);
+        assertThat(target.calls).isEqualTo(2);
+        assertThat(interceptor.getBudgetRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void noRetryOnNonTransientFailure() {
+        FlakyService target = new FlakyService(0);
+        FlakyService service = proxy(target);
+
+        assertThatThrownBy(service::fail).isInstanceOf(IllegalStateException.class);
+        assertThat(target.calls).isEqualTo(1);
+    }
+
+    @Test
+    void noRetryInsideExistingTransaction() {
+        FlakyService target = new FlakyService(1);
+        FlakyService service = proxy(target);
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThatThrownBy(service::call).isInstanceOf(CannotAcquireLockException.class);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertThat(target.calls).isEqualTo(1);
+    }
+
+    @Test
+    void countPerExceptionType() {
+        FlakyService service = proxy(new FlakyService(1));
+
+        assertThat(service.deadlockOnce()).isTrue();
+        assertThat(interceptor.getRetryCounts()).containsEntry(PessimisticLockingFailureException.class, 1L);
+    }
+
+    @Test
+    void retryWholeTransaction() {
+        DataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+        TransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        interceptor.setInitialBackoffMs(1);
+
+        //재시도 인터셉터를 트랜잭션 인터셉터 바깥에 둔다 - 시도마다 새 트랜잭션
+        ProxyFactory proxyFactory = new ProxyFactory(new SaveThenFailService(memberRepository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        SaveThenFailService service = (SaveThenFailService) proxyFactory.getProxy();
+
+        try {
+            service.saveMember("retryTx");
+
+            //첫 시도의 insert 가 롤백되지 않았다면 두 번째 시도는 키 중복으로 실패한다
+            assertThat(memberRepository.findById("retryTx").getMoney()).isEqualTo(2);
+            assertThat(interceptor.getRetryCounts()).containsEntry(CannotAcquireLockException.class, 1L);
+        } finally {
+            memberRepository.delete("retryTx");
+        }
+    }
+
+    private FlakyService proxy(FlakyService target) {
+        interceptor.setInitialBackoffMs(1);
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        return (FlakyService) proxyFactory.getProxy();
+    }
+
+    static class SaveThenFailService {
+
+        private final MemberRepository memberRepository;
+        int attempts;
+
+        SaveThenFailService(MemberRepository memberRepository) {
+            this.memberRepository = memberRepository;
+        }
+
+        //첫 시도는 저장한 뒤 락 타임아웃으로 실패한다
+        @Transactional
+        public void saveMember(String memberId) {
+            attempts++;
+            memberRepository.save(new Member(memberId, attempts));
+            if (attempts == 1) {
+                throw new CannotAcquireLockException("lock timeout");
+            }
+        }
+    }
+
+    static class FlakyService {
+
+        private final int failures;
+        int calls;
+
+        FlakyService(int failures) {
+            this.failures = failures;
+        }
+
+        public int call() {
+            calls++;
+            if (calls <= failures) {
+                throw new CannotAcquireLockException("lock timeout");
+            }
+            return calls;
+        }
+
+        public boolean deadlockOnce() {
+            calls++;
+            if (calls == 1) {
+                throw new PessimisticLockingFailureException("deadlock", null);
+            }
+            return true;
+        }
+
+        public void fail() {
+            calls++;
+            throw new IllegalStateException("business failure");
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferCommand;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadTransferExecutorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    VirtualThreadTransferExecutor executor;
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(4);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository));
+        proxyFactory.setProxyTargetClass(true);
+        TransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        executor = new VirtualThreadTransferExecutor((MemberServiceV4) proxyFactory.getProxy(), dataSource);
+
+        memberRepository.saveAll(List.of(new Member(MEMBER_A, 10000), new Member(MEMBER_B, 10000)));
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+        dataSource.close();
+    }
+
+    @Test
+    void transferAll() {
+        List<TransferCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            commands.add(new TransferCommand(MEMBER_A, MEMBER_B, 10));
+            commands.add(new TransferCommand(MEMBER_B, MEMBER_A, 10));
+        }
+        TransferCommand missing = new TransferCommand(MEMBER_A, "memberNone", 10);
+        commands.add(missing);
+
+        TransferBatchResult result = executor.transferAll(commands);
+
+        //동시 실행 수는 풀 크기로 제한된다
+        assertThat(executor.getMaxConcurrency()).isEqualTo(4);
+        assertThat(result.getSucceededCount() + result.getFailures().size()).isEqualTo(401);
+        assertThat(result.getFailures()).containsKey(missing);
+        assertThat(result.getFailures().get(missing)).isInstanceOf(NoSuchElementException.class);
+        assertThat(result.getQueueTime().getCount()).isEqualTo(401);
+
+        //경합 중 락 대기 시간이 지나 실패한 이체는 롤백된다 - 성공한 이체만 반영되고 총액은 보존된다
+        int expectedA = 10000;
+        for (TransferCommand command : commands) {
+            RuntimeException failure = result.getFailures().get(command);
+            if (failure == null) {
+                expectedA += command.getFromId().equals(MEMBER_A) ? -command.getMoney() : command.getMoney();
+            } else if (command != missing) {
+                assertThat(failure).isInstanceOf(PessimisticLockingFailureException.class);
+            }
+        }
+        assertThat(memberRepository.findMoneyById(MEMBER_A)).isEqualTo(expectedA);
+        assertThat(memberRepository.findMoneyById(MEMBER_A) + memberRepository.findMoneyById(MEMBER_B)).isEqualTo(20000);
+    }
+
+}